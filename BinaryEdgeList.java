@@ -0,0 +1,325 @@
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+
+/**
+ * Packed binary edge list format, written by EdgeListConverter.
+ *
+ * A file holds edges sorted by (first, second) without duplicates, laid out as:
+ *
+ * - header (16 bytes): magic, version, encoding, block size (ints)
+ *
+ * - data: with FIXED encoding, one 16 byte record of two longs per edge. With
+ * DELTA encoding, blocks of up to blockSize edges, each starting with an
+ * absolute edge followed by varint deltas to the previous edge
+ *
+ * - block index (DELTA only): the file offset of every block (longs)
+ *
+ * - trailer (32 bytes): edge count, index offset (longs), block size,
+ * encoding, version, magic (ints)
+ *
+ * Counts live in the trailer so a file can be written in one sequential pass,
+ * as HDFS requires. Fixed records are split on record boundaries by
+ * arithmetic, delta blocks through the block index.
+ */
+public class BinaryEdgeList {
+  public static final int MAGIC = 0x54545045; // "TTPE"
+  public static final int VERSION = 1;
+  public static final int FIXED = 0;
+  public static final int DELTA = 1;
+
+  public static final int HEADER_SIZE = 16;
+  public static final int TRAILER_SIZE = 32;
+  public static final int RECORD_SIZE = 16;
+  public static final int DEFAULT_BLOCK_SIZE = 4096;
+
+  public static final String ENCODING_CONFIG_KEY = "binaryEdgeListEncoding";
+  public static final String DEFAULT_ENCODING = "fixed";
+  public static final String BLOCK_SIZE_CONFIG_KEY = "binaryEdgeListBlockSize";
+
+  // Maximum size of one memory mapped window
+  public static final long MAX_MAPPED_SIZE = 1L << 30;
+
+  /**
+   * Parse an encoding name.
+   *
+   * @param name "fixed" or "delta".
+   * @return The encoding.
+   */
+  public static int encoding(String name) {
+    if ("fixed".equalsIgnoreCase(name)) {
+      return FIXED;
+    } else if ("delta".equalsIgnoreCase(name)) {
+      return DELTA;
+    }
+    throw new IllegalArgumentException("Unknown binary edge list encoding: " + name);
+  }
+
+  /**
+   * Check whether some bytes start a binary edge list.
+   *
+   * @param header First bytes of a file.
+   * @param length Number of bytes available.
+   * @return <tt>true</tt> if the bytes start with the magic number.
+   */
+  public static boolean hasMagic(byte[] header, int length) {
+    return length >= 4 && ByteBuffer.wrap(header, 0, 4).getInt() == MAGIC;
+  }
+
+  /** File metadata, read from the trailer. */
+  public static class Metadata {
+    public long edgeCount;
+    public long indexOffset;
+    public int blockSize;
+    public int encoding;
+
+    public long blockCount() {
+      return encoding == DELTA ? (edgeCount + blockSize - 1) / blockSize : 0;
+    }
+
+    /**
+     * Read the metadata from a file's trailer.
+     *
+     * @param trailer The last TRAILER_SIZE bytes of the file.
+     * @return The metadata.
+     */
+    public static Metadata fromTrailer(ByteBuffer trailer) throws IOException {
+      Metadata metadata = new Metadata();
+      metadata.edgeCount = trailer.getLong();
+      metadata.indexOffset = trailer.getLong();
+      metadata.blockSize = trailer.getInt();
+      metadata.encoding = trailer.getInt();
+      int version = trailer.getInt();
+      if (trailer.getInt() != MAGIC || version != VERSION) {
+        throw new IOException("Not a binary edge list, or an unsupported version");
+      }
+      return metadata;
+    }
+  }
+
+  /**
+   * Writes edges, which must be appended in ascending (first, second) order
+   * without duplicates.
+   */
+  public static class Writer implements Closeable {
+    private final DataOutputStream out;
+    private final int encoding;
+    private final int blockSize;
+    private long position = 0;
+    private long edgeCount = 0;
+    private long previousFirst = 0;
+    private long previousSecond = 0;
+    private long[] blockOffsets = new long[16];
+
+    public Writer(OutputStream out, int encoding, int blockSize) throws IOException {
+      this.out = new DataOutputStream(new BufferedOutputStream(out, 1 << 16));
+      this.encoding = encoding;
+      this.blockSize = encoding == DELTA ? blockSize : 0;
+
+      this.out.writeInt(MAGIC);
+      this.out.writeInt(VERSION);
+      this.out.writeInt(encoding);
+      this.out.writeInt(this.blockSize);
+      position = HEADER_SIZE;
+    }
+
+    public void append(long first, long second) throws IOException {
+      if (edgeCount > 0 && (first < previousFirst || (first == previousFirst && second <= previousSecond))) {
+        throw new IllegalArgumentException("Edges must be appended in ascending order without duplicates");
+      }
+
+      if (encoding == FIXED) {
+        out.writeLong(first);
+        out.writeLong(second);
+        position += RECORD_SIZE;
+      } else if (edgeCount % blockSize == 0) {
+        // Start a new block with an absolute edge
+        int block = (int) (edgeCount / blockSize);
+        if (block == blockOffsets.length) {
+          blockOffsets = Arrays.copyOf(blockOffsets, 2 * blockOffsets.length);
+        }
+        blockOffsets[block] = position;
+        position += Varints.writeVarLong(out, Varints.zigZag(first));
+        position += Varints.writeVarLong(out, Varints.zigZag(second - first));
+      } else if (first == previousFirst) {
+        position += Varints.writeVarLong(out, 0);
+        position += Varints.writeVarLong(out, second - previousSecond);
+      } else {
+        position += Varints.writeVarLong(out, first - previousFirst);
+        position += Varints.writeVarLong(out, Varints.zigZag(second - first));
+      }
+
+      previousFirst = first;
+      previousSecond = second;
+      edgeCount++;
+    }
+
+    public long getEdgeCount() {
+      return edgeCount;
+    }
+
+    @Override
+    public void close() throws IOException {
+      long indexOffset = position;
+      long blockCount = encoding == DELTA ? (edgeCount + blockSize - 1) / blockSize : 0;
+      for (int block = 0; block < blockCount; block++) {
+        out.writeLong(blockOffsets[block]);
+      }
+
+      out.writeLong(edgeCount);
+      out.writeLong(indexOffset);
+      out.writeInt(blockSize);
+      out.writeInt(encoding);
+      out.writeInt(VERSION);
+      out.writeInt(MAGIC);
+      out.close();
+    }
+  }
+
+  /**
+   * Decode a block of a DELTA encoded file.
+   *
+   * @param in        Buffer positioned at the start of the block.
+   * @param edgeCount Number of edges in the block.
+   * @param out       Receives first and second of edge i at 2i and 2i + 1.
+   */
+  public static void decodeBlock(ByteBuffer in, int edgeCount, long[] out) {
+    long first = Varints.unZigZag(Varints.readVarLong(in));
+    long second = first + Varints.unZigZag(Varints.readVarLong(in));
+    out[0] = first;
+    out[1] = second;
+
+    for (int i = 1; i < edgeCount; i++) {
+      long firstDelta = Varints.readVarLong(in);
+      if (firstDelta == 0) {
+        second += Varints.readVarLong(in);
+      } else {
+        first += firstDelta;
+        second = first + Varints.unZigZag(Varints.readVarLong(in));
+      }
+      out[2 * i] = first;
+      out[2 * i + 1] = second;
+    }
+  }
+
+  /**
+   * Reads a local binary edge list through memory mapped windows of at most
+   * MAX_MAPPED_SIZE bytes, for in-process use.
+   */
+  public static class MappedReader implements Closeable {
+    public long first = 0;
+    public long second = 0;
+
+    private final FileChannel channel;
+    private final Metadata metadata;
+    private final long[] blockOffsets;
+    private MappedByteBuffer window;
+    private long windowStart = 0;
+    private long edgesRead = 0;
+
+    // DELTA decoding state
+    private final long[] block;
+    private int blockEdgeCount = 0;
+    private int blockPosition = 0;
+    private long nextBlock = 0;
+
+    public MappedReader(File file) throws IOException {
+      this.channel = new RandomAccessFile(file, "r").getChannel();
+
+      ByteBuffer trailer = ByteBuffer.allocate(TRAILER_SIZE);
+      channel.read(trailer, channel.size() - TRAILER_SIZE);
+      trailer.flip();
+      this.metadata = Metadata.fromTrailer(trailer);
+
+      if (metadata.encoding == DELTA) {
+        int blockCount = (int) metadata.blockCount();
+        ByteBuffer index = channel.map(FileChannel.MapMode.READ_ONLY, metadata.indexOffset, 8L * blockCount);
+        blockOffsets = new long[blockCount];
+        for (int i = 0; i < blockCount; i++) {
+          blockOffsets[i] = index.getLong();
+        }
+        block = new long[2 * metadata.blockSize];
+      } else {
+        blockOffsets = null;
+        block = null;
+        mapWindow(HEADER_SIZE, metadata.indexOffset);
+      }
+    }
+
+    public Metadata getMetadata() {
+      return metadata;
+    }
+
+    /**
+     * Read the next edge into first and second.
+     *
+     * @return <tt>false</tt> at the end of the file.
+     */
+    public boolean next() throws IOException {
+      if (edgesRead == metadata.edgeCount) {
+        return false;
+      }
+
+      if (metadata.encoding == FIXED) {
+        if (!window.hasRemaining()) {
+          mapWindow(HEADER_SIZE + edgesRead * RECORD_SIZE, metadata.indexOffset);
+        }
+        first = window.getLong();
+        second = window.getLong();
+      } else {
+        if (blockPosition == blockEdgeCount) {
+          readBlock();
+        }
+        first = block[2 * blockPosition];
+        second = block[2 * blockPosition + 1];
+        blockPosition++;
+      }
+
+      edgesRead++;
+      return true;
+    }
+
+    private void readBlock() throws IOException {
+      long offset = blockOffsets[(int) nextBlock];
+      long end = blockEnd((int) nextBlock);
+      if (window == null || offset < windowStart || end > windowStart + window.capacity()) {
+        mapWindow(offset, metadata.indexOffset);
+      }
+      window.position((int) (offset - windowStart));
+
+      blockEdgeCount = (int) Math.min(metadata.blockSize, metadata.edgeCount - nextBlock * metadata.blockSize);
+      decodeBlock(window, blockEdgeCount, block);
+      blockPosition = 0;
+      nextBlock++;
+    }
+
+    private long blockEnd(int block) {
+      return block + 1 < blockOffsets.length ? blockOffsets[block + 1] : metadata.indexOffset;
+    }
+
+    // Maps [start, min(end, start + MAX_MAPPED_SIZE)), rounded down to whole
+    // records for FIXED files
+    private void mapWindow(long start, long end) throws IOException {
+      long size = Math.min(end - start, MAX_MAPPED_SIZE);
+      if (metadata.encoding == FIXED) {
+        size -= size % RECORD_SIZE;
+      } else {
+        // Stop at the last block that fits entirely
+        int lastBlock = (int) nextBlock;
+        while (lastBlock + 1 < blockOffsets.length && blockEnd(lastBlock + 1) - start <= MAX_MAPPED_SIZE) {
+          lastBlock++;
+        }
+        size = blockEnd(lastBlock) - start;
+      }
+      windowStart = start;
+      window = channel.map(FileChannel.MapMode.READ_ONLY, start, size);
+    }
+
+    @Override
+    public void close() throws IOException {
+      channel.close();
+    }
+  }
+}
@@ -0,0 +1,193 @@
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FSDataInputStream;
+import org.apache.hadoop.fs.FileStatus;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.io.NullWritable;
+import org.apache.hadoop.mapreduce.InputSplit;
+import org.apache.hadoop.mapreduce.RecordReader;
+import org.apache.hadoop.mapreduce.TaskAttemptContext;
+import org.apache.hadoop.mapreduce.lib.input.FileInputFormat;
+import org.apache.hadoop.mapreduce.lib.input.FileSplit;
+
+/**
+ * Reads the edges of BinaryEdgeList files as (LongPair, NullWritable) records.
+ * A split reads the fixed records, or the delta blocks, that start inside it.
+ */
+public class BinaryEdgeListInputFormat extends FileInputFormat<LongPair, NullWritable> {
+
+  /**
+   * Check whether an input path holds binary edge lists, from the magic number
+   * of its first non hidden file.
+   *
+   * @param path File or directory.
+   * @param conf Configuration of the file system.
+   * @return <tt>true</tt> if the input is a binary edge list.
+   */
+  public static boolean isBinaryEdgeList(Path path, Configuration conf) throws IOException {
+    FileSystem fs = path.getFileSystem(conf);
+    FileStatus[] statuses = fs.globStatus(path);
+    if (statuses == null) {
+      throw new FileNotFoundException("Input path does not exist: " + path);
+    }
+    for (FileStatus status : statuses) {
+      FileStatus[] files = status.isDirectory() ? fs.listStatus(status.getPath()) : new FileStatus[] { status };
+      for (FileStatus file : files) {
+        String name = file.getPath().getName();
+        if (file.isDirectory() || name.startsWith("_") || name.startsWith(".")) {
+          continue;
+        }
+
+        byte[] header = new byte[4];
+        int length = 0;
+        try (FSDataInputStream in = fs.open(file.getPath())) {
+          int read;
+          while (length < header.length && (read = in.read(header, length, header.length - length)) > 0) {
+            length += read;
+          }
+        }
+        return BinaryEdgeList.hasMagic(header, length);
+      }
+    }
+    return false;
+  }
+
+  @Override
+  public RecordReader<LongPair, NullWritable> createRecordReader(InputSplit split, TaskAttemptContext context) {
+    return new BinaryEdgeListRecordReader();
+  }
+
+  public static class BinaryEdgeListRecordReader extends RecordReader<LongPair, NullWritable> {
+    private FSDataInputStream in;
+    private BinaryEdgeList.Metadata metadata;
+    private final LongPair key = new LongPair();
+
+    // Edges [nextEdge, endEdge) of the file belong to this split
+    private long startEdge;
+    private long nextEdge;
+    private long endEdge;
+
+    // DELTA decoding state
+    private long[] blockOffsets;
+    private int nextBlock;
+    private long[] block;
+    private byte[] blockBytes = new byte[0];
+    private int blockEdgeCount = 0;
+    private int blockPosition = 0;
+
+    @Override
+    public void initialize(InputSplit genericSplit, TaskAttemptContext context) throws IOException {
+      FileSplit split = (FileSplit) genericSplit;
+      Configuration conf = context.getConfiguration();
+      Path file = split.getPath();
+      FileSystem fs = file.getFileSystem(conf);
+      long fileLength = fs.getFileStatus(file).getLen();
+      in = fs.open(file);
+
+      byte[] trailer = new byte[BinaryEdgeList.TRAILER_SIZE];
+      in.readFully(fileLength - BinaryEdgeList.TRAILER_SIZE, trailer);
+      metadata = BinaryEdgeList.Metadata.fromTrailer(ByteBuffer.wrap(trailer));
+
+      long start = split.getStart();
+      long end = start + split.getLength();
+
+      if (metadata.encoding == BinaryEdgeList.FIXED) {
+        // Records whose first byte lies in [start, end)
+        startEdge = Math.max(0, ceilDiv(start - BinaryEdgeList.HEADER_SIZE, BinaryEdgeList.RECORD_SIZE));
+        endEdge = Math.min(metadata.edgeCount, ceilDiv(end - BinaryEdgeList.HEADER_SIZE, BinaryEdgeList.RECORD_SIZE));
+        endEdge = Math.max(startEdge, endEdge);
+        in.seek(BinaryEdgeList.HEADER_SIZE + startEdge * BinaryEdgeList.RECORD_SIZE);
+      } else {
+        // Blocks whose first byte lies in [start, end)
+        int blockCount = (int) metadata.blockCount();
+        byte[] index = new byte[8 * blockCount];
+        in.readFully(metadata.indexOffset, index);
+        ByteBuffer indexBuffer = ByteBuffer.wrap(index);
+        blockOffsets = new long[blockCount];
+        for (int i = 0; i < blockCount; i++) {
+          blockOffsets[i] = indexBuffer.getLong();
+        }
+
+        int firstBlock = 0;
+        while (firstBlock < blockCount && blockOffsets[firstBlock] < start) {
+          firstBlock++;
+        }
+        int lastBlock = firstBlock;
+        while (lastBlock < blockCount && blockOffsets[lastBlock] < end) {
+          lastBlock++;
+        }
+        nextBlock = firstBlock;
+        startEdge = (long) firstBlock * metadata.blockSize;
+        endEdge = Math.min(metadata.edgeCount, (long) lastBlock * metadata.blockSize);
+        endEdge = Math.max(startEdge, endEdge);
+        block = new long[2 * metadata.blockSize];
+      }
+      nextEdge = startEdge;
+    }
+
+    @Override
+    public boolean nextKeyValue() throws IOException {
+      if (nextEdge >= endEdge) {
+        return false;
+      }
+
+      if (metadata.encoding == BinaryEdgeList.FIXED) {
+        key.set(in.readLong(), in.readLong());
+      } else {
+        if (blockPosition == blockEdgeCount) {
+          readBlock();
+        }
+        key.set(block[2 * blockPosition], block[2 * blockPosition + 1]);
+        blockPosition++;
+      }
+
+      nextEdge++;
+      return true;
+    }
+
+    private void readBlock() throws IOException {
+      long offset = blockOffsets[nextBlock];
+      long blockEnd = nextBlock + 1 < blockOffsets.length ? blockOffsets[nextBlock + 1] : metadata.indexOffset;
+      int length = (int) (blockEnd - offset);
+      if (blockBytes.length < length) {
+        blockBytes = new byte[length];
+      }
+      in.readFully(offset, blockBytes, 0, length);
+
+      blockEdgeCount = (int) Math.min(metadata.blockSize, metadata.edgeCount - (long) nextBlock * metadata.blockSize);
+      BinaryEdgeList.decodeBlock(ByteBuffer.wrap(blockBytes, 0, length), blockEdgeCount, block);
+      blockPosition = 0;
+      nextBlock++;
+    }
+
+    private static long ceilDiv(long value, long divisor) {
+      return value <= 0 ? 0 : (value + divisor - 1) / divisor;
+    }
+
+    @Override
+    public LongPair getCurrentKey() {
+      return key;
+    }
+
+    @Override
+    public NullWritable getCurrentValue() {
+      return NullWritable.get();
+    }
+
+    @Override
+    public float getProgress() {
+      return endEdge == startEdge ? 1.0f : (float) (nextEdge - startEdge) / (endEdge - startEdge);
+    }
+
+    @Override
+    public void close() throws IOException {
+      if (in != null) {
+        in.close();
+      }
+    }
+  }
+}
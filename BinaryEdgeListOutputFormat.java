@@ -0,0 +1,40 @@
+import java.io.IOException;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.io.NullWritable;
+import org.apache.hadoop.mapreduce.RecordWriter;
+import org.apache.hadoop.mapreduce.TaskAttemptContext;
+import org.apache.hadoop.mapreduce.lib.output.FileOutputFormat;
+
+/**
+ * Writes (LongPair, NullWritable) records as a BinaryEdgeList file per task.
+ * Records must arrive sorted without duplicates, as reducer keys do.
+ */
+public class BinaryEdgeListOutputFormat extends FileOutputFormat<LongPair, NullWritable> {
+
+  @Override
+  public RecordWriter<LongPair, NullWritable> getRecordWriter(TaskAttemptContext context) throws IOException {
+    Configuration conf = context.getConfiguration();
+    int encoding = BinaryEdgeList.encoding(
+        conf.get(BinaryEdgeList.ENCODING_CONFIG_KEY, BinaryEdgeList.DEFAULT_ENCODING));
+    int blockSize = conf.getInt(BinaryEdgeList.BLOCK_SIZE_CONFIG_KEY, BinaryEdgeList.DEFAULT_BLOCK_SIZE);
+
+    Path file = getDefaultWorkFile(context, "");
+    FileSystem fs = file.getFileSystem(conf);
+    final BinaryEdgeList.Writer writer = new BinaryEdgeList.Writer(fs.create(file, false), encoding, blockSize);
+
+    return new RecordWriter<LongPair, NullWritable>() {
+      @Override
+      public void write(LongPair key, NullWritable value) throws IOException {
+        writer.append(key.first, key.second);
+      }
+
+      @Override
+      public void close(TaskAttemptContext context) throws IOException {
+        writer.close();
+      }
+    };
+  }
+}
@@ -0,0 +1,815 @@
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * Compact-Forward triangle counting (Latapy 2008) over a primitive CSR
+ * adjacency, used to solve a single Triangle Type Partition subproblem.
+ *
+ * Edges are buffered as raw longs. build() ranks the vertices once by
+ * (degree, id) and keeps, for every vertex, only its neighbors of higher rank
+ * (its forward neighbors) sorted by rank. Every triangle is then found exactly
+ * once by intersecting the forward neighbors of both ends of each edge, without
+ * boxing or map lookups.
+ *
+ * Dense graphs, whose edge density reaches a threshold, also get a bitset of
+ * the forward neighbors of their highest forward degree vertices, within a
+ * memory cap. Edges between two such vertices are intersected by AND and
+ * popcount, with a bitset of each partition's vertices for type 1 triangles,
+ * and edges with one such end test the other end's list against its bitset.
+ *
+ * With deduplication on, build() drops repeated edges (in either direction)
+ * after mapping their ends to vertex indices, by sorting them as packed
+ * index pairs, so callers may feed raw edge lists.
+ *
+ * Edges that arrive sorted, as from a secondary sort, can instead be added
+ * with addSortedEdge() and built by buildSorted(), which labels the vertices
+ * by id instead of rank: filling the forward lists in edge order then leaves
+ * them sorted by id, so neither the ranks nor the lists need sorting.
+ *
+ * An instance is meant to be reused across subproblems: clear() keeps the
+ * allocated arrays around for the next one.
+ */
+public class CompactForward {
+  public static final double DEFAULT_BITMAP_DENSITY_THRESHOLD = 0.01;
+  public static final long DEFAULT_BITMAP_MEMORY_CAP = 64L << 20;
+
+  // Rough heap taken per buffered edge by build(): the edge, two copies of its
+  // ends, their indices, a forward neighbor and a deduplication key, plus
+  // growth slack, not counting bitsets
+  public static final int ESTIMATED_BYTES_PER_EDGE = 96;
+
+  private long[] edges; // endpoints of edge i are at 2i and 2i + 1
+  private int edgeCount = 0;
+  private boolean deduplicate = false;
+  private int duplicateEdgeCount = 0;
+
+  private long[] vertexIds = new long[0]; // vertex id by rank
+  private int vertexCount = 0;
+  private int[] offsets = new int[1]; // forward neighbors of rank r: [offsets[r], offsets[r + 1])
+  private int[] neighbors = new int[0]; // forward neighbor ranks, ascending per vertex
+  private boolean rankOrdered = true; // false if vertices are labeled by id instead of rank
+
+  // Scratch space for build(), kept between subproblems
+  private long[] sortedIds = new long[0];
+  private int[] endpoints = new int[0];
+  private int[] degrees = new int[0];
+  private long[] rankKeys = new long[0];
+  private int[] ranks = new int[0];
+  private long[] edgeKeys = new long[0];
+
+  private Intersection intersection = Intersection.ADAPTIVE;
+  private int[] common = new int[0]; // third vertices found for one edge
+  private int[] partitions = new int[0]; // partition of each vertex, by label
+
+  private double bitmapDensityThreshold = DEFAULT_BITMAP_DENSITY_THRESHOLD;
+  private long bitmapMemoryCap = DEFAULT_BITMAP_MEMORY_CAP;
+  private int wordCount = 0; // words of a bitset over the ranks
+  private long[] bitsets = new long[0]; // forward neighbors, wordCount words per slot
+  private int[] bitsetSlots = new int[0]; // slot of rank r in bitsets, or -1
+  private long[] masks = new long[0]; // ranks of each partition, wordCount words per partition
+  private int[] maskPartitions = new int[0]; // partition of each mask
+  private int maskCount = 0;
+
+  private long type1TriangleCount = 0;
+  private long type2Or3TriangleCount = 0;
+
+  // Triangles of each forward edge, by position in neighbors, when on
+  private boolean edgeTriangleCounting = false;
+  private int[] edgeType1Triangles = new int[0];
+  private int[] edgeType2Or3Triangles = new int[0];
+  private long[] vertexTriangles = new long[0]; // type 1 and type 2 or 3 counts at 2r and 2r + 1
+  private int[] vertexDegrees = new int[0]; // degree and same partition degree at 2r and 2r + 1
+
+  // Flags of each vertex for visitTriangles(), by label
+  private static final int IN_FILTER = 1;
+  private static final int FORWARD_IN_FILTER = 2;
+  private int[] filterFlags = new int[0];
+
+  // Statistics of the last build() and countTriangles()
+  private int maxDegree = 0;
+  private long intersectionCount = 0;
+  private long wedgeCheckCount = 0;
+  private long buildNanos = 0;
+  private long sortNanos = 0;
+  private long intersectNanos = 0;
+
+  /**
+   * Create a new instance.
+   *
+   * @param estimatedEdgeCount Initial capacity of the edge buffer.
+   */
+  public CompactForward(int estimatedEdgeCount) {
+    this.edges = new long[2 * Math.max(estimatedEdgeCount, 1)];
+  }
+
+  /**
+   * Set the kernel that intersects forward neighbor lists, ADAPTIVE by default.
+   *
+   * @param intersection The kernel.
+   */
+  public void setIntersection(Intersection intersection) {
+    this.intersection = intersection;
+  }
+
+  /**
+   * Configure the bitset path.
+   *
+   * @param densityThreshold Edge density (edges over vertex pairs) from which
+   *                         bitsets are built, above 1 to disable them.
+   * @param memoryCap        Maximum size of the bitsets in bytes.
+   */
+  public void setBitmap(double densityThreshold, long memoryCap) {
+    this.bitmapDensityThreshold = densityThreshold;
+    this.bitmapMemoryCap = memoryCap;
+  }
+
+  /**
+   * Make build() drop duplicate edges, off by default.
+   *
+   * @param deduplicate Whether the added edges may repeat.
+   */
+  public void setDeduplicate(boolean deduplicate) {
+    this.deduplicate = deduplicate;
+  }
+
+  /**
+   * Make countTriangles() also count the triangles of every edge, for
+   * visitEdgeTriangleCounts() and visitVertexTriangleCounts(), off by
+   * default. Bitsets are not used while on.
+   *
+   * @param edgeTriangleCounting Whether to count per edge.
+   */
+  public void setEdgeTriangleCounting(boolean edgeTriangleCounting) {
+    this.edgeTriangleCounting = edgeTriangleCounting;
+  }
+
+  /** Receives the triangle counts of an edge. */
+  public interface EdgeTriangleVisitor {
+    void visit(long u, long v, int type1TriangleCount, int type2Or3TriangleCount)
+        throws IOException, InterruptedException;
+  }
+
+  /**
+   * Pass every edge of at least one triangle to a visitor, with the counts of
+   * the last countTriangles() call, which must have counted per edge.
+   *
+   * @param visitor The visitor.
+   */
+  public void visitEdgeTriangleCounts(EdgeTriangleVisitor visitor) throws IOException, InterruptedException {
+    for (int u = 0; u < vertexCount; u++) {
+      for (int e = offsets[u]; e < offsets[u + 1]; e++) {
+        if (edgeType1Triangles[e] > 0 || edgeType2Or3Triangles[e] > 0) {
+          visitor.visit(vertexIds[u], vertexIds[neighbors[e]], edgeType1Triangles[e], edgeType2Or3Triangles[e]);
+        }
+      }
+    }
+  }
+
+  /** Receives the degree and triangle counts of a vertex. */
+  public interface VertexTriangleVisitor {
+    void visit(long vertex, int degree, int samePartitionDegree, long type1TriangleCount, long type2Or3TriangleCount)
+        throws IOException, InterruptedException;
+  }
+
+  /**
+   * Pass every vertex to a visitor, with its degree in the built graph, the
+   * part of it to neighbors in its own partition and its triangle counts from
+   * the last countTriangles() call, which must have counted per edge.
+   *
+   * @param visitor The visitor.
+   */
+  public void visitVertexTriangleCounts(VertexTriangleVisitor visitor) throws IOException, InterruptedException {
+    vertexTriangles = ensureCapacity(vertexTriangles, 2 * vertexCount);
+    vertexDegrees = ensureCapacity(vertexDegrees, 2 * vertexCount);
+    Arrays.fill(vertexTriangles, 0, 2 * vertexCount, 0);
+    Arrays.fill(vertexDegrees, 0, 2 * vertexCount, 0);
+
+    // Every triangle is on two edges of each of its vertices
+    for (int u = 0; u < vertexCount; u++) {
+      for (int e = offsets[u]; e < offsets[u + 1]; e++) {
+        int v = neighbors[e];
+        int samePartition = partitions[u] == partitions[v] ? 1 : 0;
+        vertexTriangles[2 * u] += edgeType1Triangles[e];
+        vertexTriangles[2 * u + 1] += edgeType2Or3Triangles[e];
+        vertexTriangles[2 * v] += edgeType1Triangles[e];
+        vertexTriangles[2 * v + 1] += edgeType2Or3Triangles[e];
+        vertexDegrees[2 * u]++;
+        vertexDegrees[2 * u + 1] += samePartition;
+        vertexDegrees[2 * v]++;
+        vertexDegrees[2 * v + 1] += samePartition;
+      }
+    }
+
+    for (int v = 0; v < vertexCount; v++) {
+      visitor.visit(vertexIds[v], vertexDegrees[2 * v], vertexDegrees[2 * v + 1], vertexTriangles[2 * v] / 2,
+          vertexTriangles[2 * v + 1] / 2);
+    }
+  }
+
+  /** Receives a triangle. */
+  public interface TriangleVisitor {
+    void visit(long u, long v, long w, boolean type1) throws IOException, InterruptedException;
+  }
+
+  /**
+   * Pass every triangle of the built graph to a visitor, with whether it is of
+   * type 1 for the partitions of the last countTriangles() call. Intersects
+   * the forward lists again, without bitsets.
+   *
+   * With a filter, only the triangles with a vertex in it are visited, and the
+   * edges that cannot close one are skipped: a triangle is found from its
+   * lowest vertex, so the filtered vertex is either an end of the edge or a
+   * forward neighbor of both ends.
+   *
+   * @param vertexFilter Ascending vertex ids, or null to visit every triangle.
+   * @param visitor      The visitor.
+   */
+  public void visitTriangles(long[] vertexFilter, TriangleVisitor visitor) throws IOException, InterruptedException {
+    filterFlags = ensureCapacity(filterFlags, vertexCount);
+    for (int v = 0; v < vertexCount; v++) {
+      filterFlags[v] = vertexFilter == null || Arrays.binarySearch(vertexFilter, vertexIds[v]) >= 0 ? IN_FILTER : 0;
+    }
+    for (int u = 0; u < vertexCount; u++) {
+      for (int e = offsets[u]; e < offsets[u + 1]; e++) {
+        if ((filterFlags[neighbors[e]] & IN_FILTER) != 0) {
+          filterFlags[u] |= FORWARD_IN_FILTER;
+          break;
+        }
+      }
+    }
+
+    for (int u = 0; u < vertexCount; u++) {
+      int uFlags = filterFlags[u];
+      if (uFlags == 0) {
+        continue;
+      }
+      int uEnd = offsets[u + 1];
+
+      for (int e = offsets[u]; e < uEnd; e++) {
+        int v = neighbors[e];
+        int vFlags = filterFlags[v];
+        boolean endInFilter = ((uFlags | vFlags) & IN_FILTER) != 0;
+        if (!endInFilter && (vFlags & FORWARD_IN_FILTER) == 0) {
+          continue;
+        }
+
+        int uStart = rankOrdered ? e + 1 : offsets[u];
+        int vStart = offsets[v];
+        int vEnd = offsets[v + 1];
+        if (uStart == uEnd || vStart == vEnd) {
+          continue;
+        }
+        common = ensureCapacity(common, Math.min(uEnd - uStart, vEnd - vStart) + Intersection.OUTPUT_PADDING);
+        int commonCount = intersection.intersect(neighbors, uStart, uEnd, neighbors, vStart, vEnd, common);
+
+        for (int i = 0; i < commonCount; i++) {
+          int w = common[i];
+          if (endInFilter || (filterFlags[w] & IN_FILTER) != 0) {
+            boolean type1 = partitions[u] == partitions[v] && partitions[v] == partitions[w];
+            visitor.visit(vertexIds[u], vertexIds[v], vertexIds[w], type1);
+          }
+        }
+      }
+    }
+  }
+
+  /**
+   * Add an undirected edge. Edges are assumed to be unique unless
+   * deduplication is on, self loops are ignored.
+   *
+   * @param u One end of the edge.
+   * @param v The other end of the edge.
+   */
+  public void addEdge(long u, long v) {
+    if (u == v) {
+      return;
+    }
+    if (2 * edgeCount + 2 > edges.length) {
+      edges = Arrays.copyOf(edges, Math.max(2 * edges.length, 2 * edgeCount + 2));
+    }
+    edges[2 * edgeCount] = u;
+    edges[2 * edgeCount + 1] = v;
+    edgeCount++;
+  }
+
+  /**
+   * Add an undirected edge for buildSorted(). Edges must be added in ascending
+   * (u, v) order with u < v; repeats of the previous edge are dropped.
+   *
+   * @param u Lower end of the edge.
+   * @param v Higher end of the edge.
+   */
+  public void addSortedEdge(long u, long v) {
+    if (edgeCount > 0 && edges[2 * edgeCount - 2] == u && edges[2 * edgeCount - 1] == v) {
+      duplicateEdgeCount++;
+      return;
+    }
+    addEdge(u, v);
+  }
+
+  /**
+   * Build the forward CSR adjacency from edges added by addSortedEdge(),
+   * labeling the vertices by id. Each edge is stored at its lower (degree, id)
+   * end as in build(), and every forward list comes out sorted by id without
+   * sorting it.
+   */
+  public void buildSorted() {
+    long startTime = System.nanoTime();
+    rankOrdered = false;
+
+    // Merge the ascending lower ends with the sorted higher ends into the
+    // distinct vertex ids
+    edgeKeys = ensureCapacity(edgeKeys, edgeCount);
+    for (int e = 0; e < edgeCount; e++) {
+      edgeKeys[e] = edges[2 * e + 1];
+    }
+    long sortStartTime = System.nanoTime();
+    Arrays.sort(edgeKeys, 0, edgeCount);
+    sortNanos = System.nanoTime() - sortStartTime;
+    sortedIds = ensureCapacity(sortedIds, 2 * edgeCount);
+    int n = 0;
+    int i = 0;
+    int j = 0;
+    while (i < edgeCount || j < edgeCount) {
+      long id = j == edgeCount || (i < edgeCount && edges[2 * i] < edgeKeys[j]) ? edges[2 * i++] : edgeKeys[j++];
+      if (n == 0 || sortedIds[n - 1] != id) {
+        sortedIds[n++] = id;
+      }
+    }
+    vertexCount = n;
+
+    // Lower ends are ascending, so their index only moves forward
+    endpoints = ensureCapacity(endpoints, 2 * edgeCount);
+    degrees = ensureCapacity(degrees, n);
+    Arrays.fill(degrees, 0, n, 0);
+    int index = 0;
+    for (int e = 0; e < edgeCount; e++) {
+      while (sortedIds[index] != edges[2 * e]) {
+        index++;
+      }
+      endpoints[2 * e] = index;
+      endpoints[2 * e + 1] = Arrays.binarySearch(sortedIds, 0, n, edges[2 * e + 1]);
+      degrees[index]++;
+      degrees[endpoints[2 * e + 1]]++;
+    }
+    maxDegree = 0;
+    for (int v = 0; v < n; v++) {
+      maxDegree = Math.max(maxDegree, degrees[v]);
+    }
+    vertexIds = ensureCapacity(vertexIds, n);
+    System.arraycopy(sortedIds, 0, vertexIds, 0, n);
+
+    // Forward CSR: each edge goes to its lower (degree, id) end. The edges of
+    // a vertex arrive as (lower id, vertex) pairs by ascending lower id, then
+    // as (vertex, higher id) pairs by ascending higher id, so every list is
+    // filled in id order
+    offsets = ensureCapacity(offsets, n + 1);
+    Arrays.fill(offsets, 0, n + 1, 0);
+    for (int e = 0; e < edgeCount; e++) {
+      offsets[forwardOwner(endpoints[2 * e], endpoints[2 * e + 1]) + 1]++;
+    }
+    for (int v = 0; v < n; v++) {
+      offsets[v + 1] += offsets[v];
+    }
+    neighbors = ensureCapacity(neighbors, edgeCount);
+    ranks = ensureCapacity(ranks, n);
+    System.arraycopy(offsets, 0, ranks, 0, n); // fill positions
+    for (int e = 0; e < edgeCount; e++) {
+      int a = endpoints[2 * e];
+      int b = endpoints[2 * e + 1];
+      int owner = forwardOwner(a, b);
+      neighbors[ranks[owner]++] = owner == a ? b : a;
+    }
+    buildNanos = System.nanoTime() - startTime - sortNanos;
+  }
+
+  // The end of an edge ranked lower by (degree, id), given id order indices
+  private int forwardOwner(int a, int b) {
+    return degrees[a] < degrees[b] || (degrees[a] == degrees[b] && a < b) ? a : b;
+  }
+
+  /**
+   * Rank the vertices by (degree, id) and build the forward CSR adjacency from
+   * the buffered edges.
+   */
+  public void build() {
+    long startTime = System.nanoTime();
+    rankOrdered = true;
+    int endpointCount = 2 * edgeCount;
+
+    // Collect distinct vertex ids in ascending order
+    sortedIds = ensureCapacity(sortedIds, endpointCount);
+    System.arraycopy(edges, 0, sortedIds, 0, endpointCount);
+    long sortStartTime = System.nanoTime();
+    Arrays.sort(sortedIds, 0, endpointCount);
+    sortNanos = System.nanoTime() - sortStartTime;
+    int n = 0;
+    for (int i = 0; i < endpointCount; i++) {
+      if (n == 0 || sortedIds[n - 1] != sortedIds[i]) {
+        sortedIds[n++] = sortedIds[i];
+      }
+    }
+    vertexCount = n;
+
+    // Replace endpoints with their index in sortedIds
+    endpoints = ensureCapacity(endpoints, endpointCount);
+    for (int i = 0; i < endpointCount; i++) {
+      endpoints[i] = Arrays.binarySearch(sortedIds, 0, n, edges[i]);
+    }
+    duplicateEdgeCount = 0;
+    if (deduplicate) {
+      sortStartTime = System.nanoTime();
+      removeDuplicateEdges();
+      sortNanos += System.nanoTime() - sortStartTime;
+      endpointCount = 2 * edgeCount;
+    }
+
+    degrees = ensureCapacity(degrees, n);
+    Arrays.fill(degrees, 0, n, 0);
+    for (int i = 0; i < endpointCount; i++) {
+      degrees[endpoints[i]]++;
+    }
+
+    // Rank by (degree, id): indices are already in id order, so the index
+    // breaks degree ties
+    rankKeys = ensureCapacity(rankKeys, n);
+    maxDegree = 0;
+    for (int i = 0; i < n; i++) {
+      rankKeys[i] = (((long) degrees[i]) << 32) | i;
+      maxDegree = Math.max(maxDegree, degrees[i]);
+    }
+    sortStartTime = System.nanoTime();
+    Arrays.sort(rankKeys, 0, n);
+    sortNanos += System.nanoTime() - sortStartTime;
+    ranks = ensureCapacity(ranks, n);
+    vertexIds = ensureCapacity(vertexIds, n);
+    for (int rank = 0; rank < n; rank++) {
+      int index = (int) rankKeys[rank];
+      ranks[index] = rank;
+      vertexIds[rank] = sortedIds[index];
+    }
+
+    // Forward CSR: each edge is stored once, at its lower ranked end
+    offsets = ensureCapacity(offsets, n + 1);
+    Arrays.fill(offsets, 0, n + 1, 0);
+    for (int e = 0; e < edgeCount; e++) {
+      int r1 = ranks[endpoints[2 * e]];
+      int r2 = ranks[endpoints[2 * e + 1]];
+      offsets[Math.min(r1, r2) + 1]++;
+    }
+    for (int rank = 0; rank < n; rank++) {
+      offsets[rank + 1] += offsets[rank];
+    }
+    neighbors = ensureCapacity(neighbors, edgeCount);
+    // degrees is no longer needed and doubles as the fill position
+    for (int rank = 0; rank < n; rank++) {
+      degrees[rank] = offsets[rank];
+    }
+    for (int e = 0; e < edgeCount; e++) {
+      int r1 = ranks[endpoints[2 * e]];
+      int r2 = ranks[endpoints[2 * e + 1]];
+      if (r1 < r2) {
+        neighbors[degrees[r1]++] = r2;
+      } else {
+        neighbors[degrees[r2]++] = r1;
+      }
+    }
+    sortStartTime = System.nanoTime();
+    for (int rank = 0; rank < n; rank++) {
+      Arrays.sort(neighbors, offsets[rank], offsets[rank + 1]);
+    }
+    long endTime = System.nanoTime();
+    sortNanos += endTime - sortStartTime;
+    buildNanos = endTime - startTime - sortNanos;
+  }
+
+  // Sorts the edges as (lower index, higher index) pairs and keeps the first
+  // of every run, leaving the unique edges in endpoints and edgeCount
+  private void removeDuplicateEdges() {
+    edgeKeys = ensureCapacity(edgeKeys, edgeCount);
+    for (int e = 0; e < edgeCount; e++) {
+      long a = endpoints[2 * e];
+      long b = endpoints[2 * e + 1];
+      edgeKeys[e] = a < b ? (a << 32) | b : (b << 32) | a;
+    }
+    Arrays.sort(edgeKeys, 0, edgeCount);
+
+    int uniqueCount = 0;
+    for (int e = 0; e < edgeCount; e++) {
+      if (uniqueCount == 0 || edgeKeys[uniqueCount - 1] != edgeKeys[e]) {
+        edgeKeys[uniqueCount++] = edgeKeys[e];
+      }
+    }
+    for (int e = 0; e < uniqueCount; e++) {
+      endpoints[2 * e] = (int) (edgeKeys[e] >>> 32);
+      endpoints[2 * e + 1] = (int) edgeKeys[e];
+    }
+    duplicateEdgeCount = edgeCount - uniqueCount;
+    edgeCount = uniqueCount;
+  }
+
+  /**
+   * Count the triangles of the built graph, split by Triangle Type Partition
+   * type: type 1 triangles have all three vertices in the same partition
+   * (vertex % p), type 2 and 3 triangles span two or three partitions.
+   *
+   * @param p Partition count.
+   */
+  public void countTriangles(long p) {
+    countTriangles(new VertexPartitioner(p));
+  }
+
+  /**
+   * Count the triangles of the built graph as countTriangles(p) does, with the
+   * partitions given by a partitioner.
+   *
+   * @param partitioner Assigns vertices to partitions.
+   */
+  public void countTriangles(VertexPartitioner partitioner) {
+    long startTime = System.nanoTime();
+    type1TriangleCount = 0;
+    type2Or3TriangleCount = 0;
+    intersectionCount = 0;
+    wedgeCheckCount = 0;
+    partitions = ensureCapacity(partitions, vertexCount);
+    for (int v = 0; v < vertexCount; v++) {
+      partitions[v] = partitioner.partition(vertexIds[v]);
+    }
+    boolean bitmap = !edgeTriangleCounting && buildBitsets();
+    if (edgeTriangleCounting) {
+      edgeType1Triangles = ensureCapacity(edgeType1Triangles, offsets[vertexCount]);
+      edgeType2Or3Triangles = ensureCapacity(edgeType2Or3Triangles, offsets[vertexCount]);
+      Arrays.fill(edgeType1Triangles, 0, offsets[vertexCount], 0);
+      Arrays.fill(edgeType2Or3Triangles, 0, offsets[vertexCount], 0);
+    }
+    long bitsetTime = System.nanoTime();
+    buildNanos += bitsetTime - startTime;
+
+    for (int u = 0; u < vertexCount; u++) {
+      int uPartition = partitions[u];
+      int uEnd = offsets[u + 1];
+      int uSlot = bitmap ? bitsetSlots[u] : -1;
+
+      for (int e = offsets[u]; e < uEnd; e++) {
+        int v = neighbors[e];
+        int vPartition = partitions[v];
+
+        // Forward neighbors of v all rank above v, so with rank labels u's
+        // list can start right after v. With id labels the whole list is
+        // intersected, v's list only holds vertices ranked above v anyway
+        int uStart = rankOrdered ? e + 1 : offsets[u];
+        int vStart = offsets[v];
+        int vEnd = offsets[v + 1];
+        if (uStart == uEnd || vStart == vEnd) {
+          continue;
+        }
+        intersectionCount++;
+        wedgeCheckCount += (uEnd - uStart) + (vEnd - vStart);
+
+        int vSlot = bitmap ? bitsetSlots[v] : -1;
+        if (uSlot >= 0 && vSlot >= 0) {
+          countWithBitsets(uSlot, vSlot, rankOrdered ? (v + 1) >>> 6 : 0,
+              uPartition == vPartition ? maskOffset(vPartition) : -1);
+          continue;
+        } else if (uSlot >= 0) {
+          countWithBitset(uSlot, vStart, vEnd, uPartition == vPartition, vPartition);
+          continue;
+        } else if (vSlot >= 0) {
+          countWithBitset(vSlot, uStart, uEnd, uPartition == vPartition, vPartition);
+          continue;
+        }
+
+        common = ensureCapacity(common, Math.min(uEnd - uStart, vEnd - vStart) + Intersection.OUTPUT_PADDING);
+        int commonCount = intersection.intersect(neighbors, uStart, uEnd, neighbors, vStart, vEnd, common);
+
+        if (edgeTriangleCounting) {
+          countEdgeTriangles(e, uStart, uEnd, vStart, vEnd, commonCount, uPartition == vPartition, vPartition);
+        }
+
+        // Every common neighbor closes a triangle
+        if (uPartition != vPartition) {
+          type2Or3TriangleCount += commonCount;
+          continue;
+        }
+        for (int i = 0; i < commonCount; i++) {
+          if (vPartition == partitions[common[i]]) {
+            type1TriangleCount++;
+          } else {
+            type2Or3TriangleCount++;
+          }
+        }
+      }
+    }
+    intersectNanos = System.nanoTime() - bitsetTime;
+  }
+
+  /**
+   * Time spent in the last build() and countTriangles() other than sorting
+   * and intersecting, including building bitsets.
+   */
+  public long getBuildNanos() {
+    return buildNanos;
+  }
+
+  /** Time spent sorting in the last build() or buildSorted(). */
+  public long getSortNanos() {
+    return sortNanos;
+  }
+
+  /** Time spent intersecting in the last countTriangles(). */
+  public long getIntersectNanos() {
+    return intersectNanos;
+  }
+
+  /** Largest degree of the last built graph. */
+  public int getMaxDegree() {
+    return maxDegree;
+  }
+
+  /** Forward neighbor lists intersected by the last countTriangles(). */
+  public long getIntersectionCount() {
+    return intersectionCount;
+  }
+
+  /**
+   * Sum of the sizes of the lists intersected by the last countTriangles(),
+   * the candidate third vertices of the wedges on every edge.
+   */
+  public long getWedgeCheckCount() {
+    return wedgeCheckCount;
+  }
+
+  // Adds the triangles closed by the common neighbors of edge e to its three
+  // edges, found in the lists [uStart, uEnd) and [vStart, vEnd)
+  private void countEdgeTriangles(int e, int uStart, int uEnd, int vStart, int vEnd, int commonCount,
+      boolean samePartition, int partition) {
+    for (int i = 0; i < commonCount; i++) {
+      int w = common[i];
+      int[] counts = samePartition && partitions[w] == partition ? edgeType1Triangles : edgeType2Or3Triangles;
+      counts[e]++;
+      counts[Arrays.binarySearch(neighbors, uStart, uEnd, w)]++;
+      counts[Arrays.binarySearch(neighbors, vStart, vEnd, w)]++;
+    }
+  }
+
+  // Common neighbors of two vertices with bitsets, none below word firstWord,
+  // with a type 1 mask at maskOffset or -1 if the two vertices' partitions
+  // differ
+  private void countWithBitsets(int uSlot, int vSlot, int firstWord, int maskOffset) {
+    int uBase = uSlot * wordCount;
+    int vBase = vSlot * wordCount;
+    long commonCount = 0;
+    long type1Count = 0;
+    for (int w = firstWord; w < wordCount; w++) {
+      long word = bitsets[uBase + w] & bitsets[vBase + w];
+      commonCount += Long.bitCount(word);
+      if (maskOffset >= 0) {
+        type1Count += Long.bitCount(word & masks[maskOffset + w]);
+      }
+    }
+    type1TriangleCount += type1Count;
+    type2Or3TriangleCount += commonCount - type1Count;
+  }
+
+  // Elements of neighbors[from, to) set in the bitset of slot
+  private void countWithBitset(int slot, int from, int to, boolean samePartition, int partition) {
+    int base = slot * wordCount;
+    for (int i = from; i < to; i++) {
+      int w = neighbors[i];
+      if ((bitsets[base + (w >>> 6)] & (1L << w)) != 0) {
+        if (samePartition && partition == partitions[w]) {
+          type1TriangleCount++;
+        } else {
+          type2Or3TriangleCount++;
+        }
+      }
+    }
+  }
+
+  private int maskOffset(int partition) {
+    for (int m = 0; m < maskCount; m++) {
+      if (maskPartitions[m] == partition) {
+        return m * wordCount;
+      }
+    }
+    throw new IllegalStateException("No mask for partition " + partition);
+  }
+
+  /**
+   * Build the bitsets of the built graph if it is dense enough.
+   *
+   * @return <tt>true</tt> if bitsets were built.
+   */
+  private boolean buildBitsets() {
+    double vertexPairs = vertexCount * (vertexCount - 1.0) / 2;
+    if (vertexCount < 2 || edgeCount < bitmapDensityThreshold * vertexPairs) {
+      return false;
+    }
+    wordCount = (vertexCount + 63) >>> 6;
+
+    // One mask per partition present
+    maskCount = 0;
+    for (int rank = 0; rank < vertexCount; rank++) {
+      int partition = partitions[rank];
+      int m = 0;
+      while (m < maskCount && maskPartitions[m] != partition) {
+        m++;
+      }
+      if (m == maskCount) {
+        maskPartitions = maskCount == maskPartitions.length ? Arrays.copyOf(maskPartitions, 2 * maskCount + 1)
+            : maskPartitions;
+        maskPartitions[maskCount++] = partition;
+      }
+    }
+
+    // Bitsets go to vertices whose forward list is at least as long as a
+    // bitset, by decreasing forward degree, as long as they fit in the cap
+    long capWords = Math.min(bitmapMemoryCap / 8, Integer.MAX_VALUE) - (long) maskCount * wordCount;
+    int slotCount = (int) Math.max(0, Math.min(vertexCount, capWords / wordCount));
+    rankKeys = ensureCapacity(rankKeys, vertexCount);
+    int candidateCount = 0;
+    for (int rank = 0; rank < vertexCount; rank++) {
+      int forwardDegree = offsets[rank + 1] - offsets[rank];
+      if (forwardDegree >= wordCount) {
+        rankKeys[candidateCount++] = (((long) forwardDegree) << 32) | rank;
+      }
+    }
+    if (candidateCount < 2 || slotCount < 2) {
+      return false;
+    }
+    Arrays.sort(rankKeys, 0, candidateCount);
+    slotCount = Math.min(slotCount, candidateCount);
+
+    masks = ensureCapacity(masks, maskCount * wordCount);
+    Arrays.fill(masks, 0, maskCount * wordCount, 0);
+    for (int rank = 0; rank < vertexCount; rank++) {
+      int offset = maskOffset(partitions[rank]);
+      masks[offset + (rank >>> 6)] |= 1L << rank;
+    }
+
+    bitsetSlots = ensureCapacity(bitsetSlots, vertexCount);
+    Arrays.fill(bitsetSlots, 0, vertexCount, -1);
+    bitsets = ensureCapacity(bitsets, slotCount * wordCount);
+    Arrays.fill(bitsets, 0, slotCount * wordCount, 0);
+    for (int slot = 0; slot < slotCount; slot++) {
+      int rank = (int) rankKeys[candidateCount - 1 - slot];
+      bitsetSlots[rank] = slot;
+      int base = slot * wordCount;
+      for (int i = offsets[rank]; i < offsets[rank + 1]; i++) {
+        bitsets[base + (neighbors[i] >>> 6)] |= 1L << neighbors[i];
+      }
+    }
+    return true;
+  }
+
+  public long getType1TriangleCount() {
+    return type1TriangleCount;
+  }
+
+  public long getType2Or3TriangleCount() {
+    return type2Or3TriangleCount;
+  }
+
+  public int getVertexCount() {
+    return vertexCount;
+  }
+
+  public int getEdgeCount() {
+    return edgeCount;
+  }
+
+  /**
+   * An end of a buffered edge, before deduplication.
+   *
+   * @param i 2e or 2e + 1 for the ends of edge e.
+   * @return The vertex.
+   */
+  public long getEdgeEnd(int i) {
+    return edges[i];
+  }
+
+  /**
+   * Duplicate edges dropped by the last build(), or by addSortedEdge() since
+   * the last clear().
+   */
+  public int getDuplicateEdgeCount() {
+    return duplicateEdgeCount;
+  }
+
+  /**
+   * Forget the buffered edges and the built graph, keeping allocated arrays.
+   */
+  public void clear() {
+    edgeCount = 0;
+    vertexCount = 0;
+    duplicateEdgeCount = 0;
+  }
+
+  private static long[] ensureCapacity(long[] array, int size) {
+    return array.length >= size ? array : new long[Math.max(size, array.length + (array.length >> 1))];
+  }
+
+  private static int[] ensureCapacity(int[] array, int size) {
+    return array.length >= size ? array : new int[Math.max(size, array.length + (array.length >> 1))];
+  }
+}
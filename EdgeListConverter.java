@@ -0,0 +1,85 @@
+import java.lang.*;
+import java.io.*;
+import java.util.*;
+
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.conf.*;
+import org.apache.hadoop.io.*;
+import org.apache.hadoop.mapreduce.*;
+import org.apache.hadoop.mapreduce.lib.input.*;
+import org.apache.hadoop.mapreduce.lib.output.*;
+import org.apache.hadoop.util.*;
+
+/**
+ * Converts a text edge list to the packed BinaryEdgeList format, so later runs
+ * neither parse text nor remove duplicate edges again.
+ *
+ * Edges are canonicalized to (min, max), self loops are dropped and duplicates
+ * are removed by the shuffle, and every reducer writes its sorted share of the
+ * edges as one binary part file. No edge is ever sampled out, whatever
+ * edgeSampleProbability is set to.
+ *
+ * Usage: EdgeListConverter input output, with -D binaryEdgeListEncoding=delta
+ * (and optionally -D binaryEdgeListBlockSize=<edges>) for delta encoding.
+ */
+public class EdgeListConverter extends Configured implements Tool {
+
+  public static class CanonicalEdgeMapper extends Mapper<LongWritable, Text, LongPair, NullWritable> {
+    final EdgeParser parser = new EdgeParser();
+    final LongPair edge = new LongPair();
+
+    public void map(LongWritable key, Text value, Context context) throws IOException, InterruptedException {
+      if (parser.parse(value) && parser.first != parser.second) {
+        edge.set(Math.min(parser.first, parser.second), Math.max(parser.first, parser.second));
+        context.write(edge, NullWritable.get());
+      }
+    }
+  }
+
+  // Writes every distinct edge once
+  public static class DistinctEdgeReducer extends Reducer<LongPair, NullWritable, LongPair, NullWritable> {
+    public void reduce(LongPair key, Iterable<NullWritable> values, Context context)
+        throws IOException, InterruptedException {
+      context.write(key, NullWritable.get());
+    }
+  }
+
+  public int run(String[] args) throws Exception {
+    String inputPath = args[0];
+    String outputPath = args[1];
+    // Fail before running the job on an unknown encoding
+    BinaryEdgeList.encoding(getConf().get(BinaryEdgeList.ENCODING_CONFIG_KEY, BinaryEdgeList.DEFAULT_ENCODING));
+
+    Job job = new Job(getConf());
+    job.setJobName("edge-list-converter");
+
+    job.setMapOutputKeyClass(LongPair.class);
+    job.setMapOutputValueClass(NullWritable.class);
+    job.setOutputKeyClass(LongPair.class);
+    job.setOutputValueClass(NullWritable.class);
+
+    job.setJarByClass(EdgeListConverter.class);
+    job.setMapperClass(CanonicalEdgeMapper.class);
+    job.setReducerClass(DistinctEdgeReducer.class);
+
+    TextInputFormat.addInputPath(job, new Path(inputPath));
+    job.setOutputFormatClass(BinaryEdgeListOutputFormat.class);
+    BinaryEdgeListOutputFormat.setOutputPath(job, new Path(outputPath));
+
+    long startTime = System.nanoTime();
+
+    int ret = job.waitForCompletion(true) ? 0 : 1;
+
+    long endTime = System.nanoTime();
+
+    long executionWallClockTime = endTime - startTime;
+    System.out.println("Execution wall clock time: " + (executionWallClockTime / 1000000000) + " seconds");
+
+    return ret;
+  }
+
+  public static void main(String[] args) throws Exception {
+    int ret = ToolRunner.run(new Configuration(), new EdgeListConverter(), args);
+    System.exit(ret);
+  }
+}
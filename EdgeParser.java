@@ -0,0 +1,141 @@
+import java.nio.charset.StandardCharsets;
+
+import org.apache.hadoop.io.Text;
+
+/**
+ * Parses edge list lines straight from the bytes of a Text, without going
+ * through String or a regular expression. Fields are separated by any run of
+ * spaces or tabs. Blank lines and comment lines starting with '#' or '%' (as
+ * found in SNAP and KONECT dumps) are skipped.
+ *
+ * Vertex ids are read as Long.parseLong reads them: any long, with an optional
+ * sign. Negative ids are valid vertices, which VertexPartitioner maps into
+ * [0, p) like any other.
+ *
+ * An instance holds the result of the last parse and is meant to be reused for
+ * every record of a task.
+ */
+public class EdgeParser {
+  public long first = 0;
+  public long second = 0;
+
+  private int position = 0;
+
+  /**
+   * Parse a line holding two vertices. Anything after the second vertex is
+   * ignored.
+   *
+   * @param line The line.
+   * @return <tt>true</tt> if the line holds an edge, which is then stored in
+   *         first and second.
+   */
+  public boolean parse(Text line) {
+    return parse(line.getBytes(), 0, line.getLength());
+  }
+
+  /**
+   * Parse a line holding two vertices from a byte array.
+   *
+   * @param bytes Bytes holding the line.
+   * @param start Offset of the line.
+   * @param end   End offset of the line (exclusive).
+   * @return <tt>true</tt> if the line holds an edge, which is then stored in
+   *         first and second.
+   */
+  public boolean parse(byte[] bytes, int start, int end) {
+    position = skipWhitespace(bytes, start, end);
+    if (position == end || bytes[position] == '#' || bytes[position] == '%') {
+      return false;
+    }
+    first = parseLong(bytes, end);
+
+    position = skipWhitespace(bytes, position, end);
+    if (position == end) {
+      return false;
+    }
+    second = parseLong(bytes, end);
+    return true;
+  }
+
+  /**
+   * Parse a line holding a text key followed by a number, such as "x,y -1" or
+   * "A 42".
+   *
+   * @param line The line.
+   * @param key  Set to the first field of the line.
+   * @return <tt>true</tt> if the line holds both fields, the number is then
+   *         stored in second.
+   */
+  public boolean parseKeyValue(Text line, Text key) {
+    byte[] bytes = line.getBytes();
+    int length = line.getLength();
+
+    int start = skipWhitespace(bytes, 0, length);
+    position = start;
+    while (position < length && !isWhitespace(bytes[position])) {
+      position++;
+    }
+    if (position == start) {
+      return false;
+    }
+    key.set(bytes, start, position - start);
+
+    position = skipWhitespace(bytes, position, length);
+    if (position == length) {
+      return false;
+    }
+    second = parseLong(bytes, length);
+    return true;
+  }
+
+  // Parses the number starting at position and moves position past it. As in
+  // Long.parseLong, the number may start with '-' or '+' and out of range
+  // numbers are rejected: digits are accumulated negatively, since the range
+  // of negative longs is the larger one, and checked before each step
+  private long parseLong(byte[] bytes, int length) {
+    int start = position;
+    boolean negative = bytes[position] == '-';
+    if (negative || bytes[position] == '+') {
+      position++;
+    }
+
+    long limit = negative ? Long.MIN_VALUE : -Long.MAX_VALUE;
+    long multiplyLimit = limit / 10;
+    long value = 0;
+    int digitsStart = position;
+    while (position < length && bytes[position] >= '0' && bytes[position] <= '9') {
+      int digit = bytes[position] - '0';
+      if (value < multiplyLimit || value * 10 < limit + digit) {
+        throw numberFormatException(bytes, start, length);
+      }
+      value = value * 10 - digit;
+      position++;
+    }
+
+    if (position == digitsStart || (position < length && !isWhitespace(bytes[position]))) {
+      throw numberFormatException(bytes, start, length);
+    }
+    return negative ? value : -value;
+  }
+
+  // The exception Long.parseLong throws for the field starting at start
+  private static NumberFormatException numberFormatException(byte[] bytes, int start, int length) {
+    int end = start;
+    while (end < length && !isWhitespace(bytes[end])) {
+      end++;
+    }
+    return new NumberFormatException(
+        "For input string: \"" + new String(bytes, start, end - start, StandardCharsets.UTF_8) + "\"");
+  }
+
+  private static int skipWhitespace(byte[] bytes, int position, int length) {
+    while (position < length && isWhitespace(bytes[position])) {
+      position++;
+    }
+    return position;
+  }
+
+  private static boolean isWhitespace(byte b) {
+    return b == ' ' || b == '\t' || b == '\r' || b == '\n' || b == '\f';
+  }
+}
@@ -0,0 +1,116 @@
+import java.io.PrintStream;
+
+import org.apache.hadoop.conf.Configuration;
+
+/**
+ * Keeps every edge with probability q, as DOULION does (Tsourakakis et al.,
+ * KDD '09), to estimate the triangle count from a smaller graph. A triangle
+ * survives with probability q^3, so T' / q^3 estimates the count T from the
+ * T' triangles of the sample. Edges are kept by a seeded hash of their ends,
+ * so the duplicates and both directions of an edge are kept or dropped
+ * together, wherever they are read.
+ *
+ * Two triangles sharing an edge survive together with probability q^5, so the
+ * variance of the estimate is T (1 - q^3) / q^3 + 2 k (1 - q) / q, where k
+ * counts the pairs of triangles sharing an edge, estimated by k' / q^5 from
+ * the sample.
+ */
+public class EdgeSampler {
+  public static final String PROBABILITY_CONFIG_KEY = "edgeSampleProbability";
+  public static final double DEFAULT_PROBABILITY = 1;
+  public static final String SEED_CONFIG_KEY = "edgeSampleSeed";
+  public static final long DEFAULT_SEED = 0;
+
+  // Standard normal quantile of a two-sided 95% interval
+  public static final double Z_95 = 1.959964;
+
+  private final double q;
+  private final long seed;
+  private final long seedMix;
+  private final long threshold; // keep when the top 53 bits of the hash are below
+
+  /**
+   * @param q    Probability to keep an edge, in (0, 1].
+   * @param seed Hash seed.
+   */
+  public EdgeSampler(double q, long seed) {
+    if (!(q > 0 && q <= 1)) {
+      throw new IllegalArgumentException("Edge sample probability must be in (0, 1]");
+    }
+    this.q = q;
+    this.seed = seed;
+    this.seedMix = VertexPartitioner.mix(seed + 0x632BE59BD9B4E019L);
+    this.threshold = (long) (q * (1L << 53));
+  }
+
+  /**
+   * The sampler given by edgeSampleProbability and edgeSampleSeed.
+   *
+   * @param conf Job configuration.
+   * @return The sampler.
+   */
+  public static EdgeSampler fromConf(Configuration conf) {
+    return new EdgeSampler(conf.getDouble(PROBABILITY_CONFIG_KEY, DEFAULT_PROBABILITY),
+        conf.getLong(SEED_CONFIG_KEY, DEFAULT_SEED));
+  }
+
+  /** Whether edges are dropped at all, false in exact mode. */
+  public boolean isSampling() {
+    return q < 1;
+  }
+
+  public double getProbability() {
+    return q;
+  }
+
+  public boolean keep(long vertex1, long vertex2) {
+    if (q >= 1) {
+      return true;
+    }
+    long hash = VertexPartitioner.mix(VertexPartitioner.mix(Math.min(vertex1, vertex2) ^ seedMix)
+        + Math.max(vertex1, vertex2));
+    return (hash >>> 11) < threshold;
+  }
+
+  /**
+   * Estimated triangle count of the whole graph.
+   *
+   * @param sampledTriangleCount Triangles of the sample.
+   * @return The estimate.
+   */
+  public double estimate(double sampledTriangleCount) {
+    return sampledTriangleCount / (q * q * q);
+  }
+
+  /**
+   * Estimated variance of estimate(sampledTriangleCount).
+   *
+   * @param sampledTriangleCount  Triangles of the sample.
+   * @param sampledSharedEdgePairs Pairs of triangles of the sample sharing an
+   *                               edge.
+   * @return The variance.
+   */
+  public double variance(double sampledTriangleCount, double sampledSharedEdgePairs) {
+    double q3 = q * q * q;
+    double sharedEdgePairs = sampledSharedEdgePairs / (q3 * q * q);
+    return estimate(sampledTriangleCount) * (1 - q3) / q3 + 2 * sharedEdgePairs * (1 - q) / q;
+  }
+
+  /**
+   * Print the estimate and its 95% confidence interval.
+   *
+   * @param out                    Where to print.
+   * @param sampledTriangleCount   Triangles of the sample.
+   * @param sampledSharedEdgePairs Pairs of triangles of the sample sharing an
+   *                               edge.
+   */
+  public void print(PrintStream out, long sampledTriangleCount, long sampledSharedEdgePairs) {
+    double estimate = estimate(sampledTriangleCount);
+    double halfWidth = Z_95 * Math.sqrt(variance(sampledTriangleCount, sampledSharedEdgePairs));
+    out.println(String.format("Approximate triangle count: %.0f, edges sampled with probability %s (seed %d)",
+        estimate, q, seed));
+    out.println(String.format("  95%% confidence interval: [%.0f, %.0f], +/- %.2f%%, from %d sampled triangles "
+        + "and %d pairs sharing an edge", Math.max(0, estimate - halfWidth), estimate + halfWidth,
+        estimate > 0 ? 100 * halfWidth / estimate : 0, sampledTriangleCount, sampledSharedEdgePairs));
+  }
+}
@@ -0,0 +1,69 @@
+import java.io.IOException;
+import java.io.PrintStream;
+import java.util.List;
+
+import org.apache.hadoop.mapreduce.Counter;
+import org.apache.hadoop.mapreduce.CounterGroup;
+import org.apache.hadoop.mapreduce.Counters;
+import org.apache.hadoop.mapreduce.Job;
+import org.apache.hadoop.mapreduce.TaskCounter;
+
+/**
+ * A job run by one of the drivers and its wall clock time, for reporting.
+ */
+public class ExecutedJob {
+  public final Job job;
+  public final long wallClockTimeMillis;
+
+  public ExecutedJob(Job job, long wallClockTimeMillis) {
+    this.job = job;
+    this.wallClockTimeMillis = wallClockTimeMillis;
+  }
+
+  // Framework counters shown in summaries, next to all the drivers' own
+  private static final TaskCounter[] SUMMARY_TASK_COUNTERS = { TaskCounter.MAP_INPUT_RECORDS,
+      TaskCounter.MAP_OUTPUT_RECORDS, TaskCounter.REDUCE_INPUT_GROUPS, TaskCounter.REDUCE_SHUFFLE_BYTES,
+      TaskCounter.SPILLED_RECORDS, TaskCounter.GC_TIME_MILLIS };
+
+  /**
+   * Run a job to completion, record it and print its summary.
+   *
+   * @param job          The job.
+   * @param executedJobs Receives the job and its wall clock time.
+   * @return <tt>true</tt> if the job succeeded.
+   */
+  public static boolean run(Job job, List<ExecutedJob> executedJobs) throws Exception {
+    long startTime = System.nanoTime();
+    boolean succeeded = job.waitForCompletion(true);
+    ExecutedJob executedJob = new ExecutedJob(job, (System.nanoTime() - startTime) / 1000000);
+    executedJobs.add(executedJob);
+    executedJob.printSummary(System.out);
+    return succeeded;
+  }
+
+  /**
+   * Print the wall clock time and main counters of the job, and every counter
+   * of the drivers' own groups.
+   *
+   * @param out Where to print.
+   */
+  public void printSummary(PrintStream out) throws IOException {
+    out.println("Job " + job.getJobName() + ": " + wallClockTimeMillis + " ms wall clock time");
+    Counters counters = job.getCounters();
+    if (counters == null) {
+      return;
+    }
+    for (TaskCounter taskCounter : SUMMARY_TASK_COUNTERS) {
+      Counter counter = counters.findCounter(taskCounter);
+      out.println("  " + counter.getDisplayName() + ": " + counter.getValue());
+    }
+    for (CounterGroup group : counters) {
+      if (group.getName().startsWith("org.apache.hadoop.")) {
+        continue;
+      }
+      for (Counter counter : group) {
+        out.println("  " + group.getDisplayName() + "." + counter.getName() + ": " + counter.getValue());
+      }
+    }
+  }
+}
@@ -18,6 +18,16 @@ public class Graph {
   final private HashMap<Long, Set<Long>> adjacencyList;
   final private int MAX_SIZE = 4000000;
 
+  // Statistics of the last countTrianglesWithPartition call
+  private int maxDegree = 0;
+  private long intersectionCount = 0;
+  private long wedgeCheckCount = 0;
+  private long type1TriangleCount = 0;
+  private long type2Or3TriangleCount = 0;
+  private long buildNanos = 0;
+  private long sortNanos = 0;
+  private long intersectNanos = 0;
+
   /**
    * Create new Graph object.
    */
@@ -124,124 +134,186 @@ public class Graph {
    * @return Degree count for vertex v.
    */
   public long degree(Long v) {
-    long counter = 0;
-    Iterator<Long> neighborIterator = getNeighbors(v).iterator();
-
-    while (neighborIterator.hasNext()) {
-      neighborIterator.next();
-      counter++;
-    }
-
-    return counter;
+    return this.adjacencyList.get(v).size();
   }
 
   /**
-   * Get first neighbor with min grade
+   * Count triangles with the compact-forward algorithm, weighting triangles
+   * whose vertices all lie in the same partition (vertex % p) by 1 / (p - 1).
+   *
+   * Vertices are ranked once by degree (descending, ties broken by id) and each
+   * vertex's neighbors are stored as an array of ranks in ascending order, so
+   * the algorithm only walks sorted primitive arrays.
    *
-   * @param vertices List of vertices.
-   * @param v        vertex.
-   * @return first neighbor with min grade.
+   * @param p Partition count.
+   * @return Weighted triangle count.
    */
-  private Integer firstNeighborIndex(List<Long> vertices, Long v) { // fni
-    int index, min = vertices.size();
-    Iterator<Long> neighborIterator = getNeighbors(v).iterator();
-
-    while (neighborIterator.hasNext()) {
-      index = vertices.indexOf(neighborIterator.next());
-      if (min > index) {
-        min = index;
-      }
-    }
-
-    return min;
+  public double countTrianglesWithPartition(int p) {
+    return countTrianglesWithPartition(p, Intersection.ADAPTIVE);
   }
 
   /**
-   * Get first neighbor with min grade of specific vertex
+   * Count triangles as countTrianglesWithPartition(p) does, intersecting
+   * neighbor lists with the given kernel.
    *
-   * @param vertices List of vertices.
-   * @param v        vertex.
-   * @param j        vertex to be compared with.
-   * @return first neighbor with min grade of vertex v.
+   * @param p            Partition count.
+   * @param intersection Intersection kernel.
+   * @return Weighted triangle count.
    */
-  private Integer firstNeighborWithMinDegree(List<Long> vertices, Long v, Integer j) { // nni
-    int index, min = vertices.size();
-    Iterator<Long> neighborIterator = getNeighbors(v).iterator();
-
-    while (neighborIterator.hasNext()) {
-      index = vertices.indexOf(neighborIterator.next());
-
-      if (min > index && index > j) {
-        min = index;
-      }
-    }
-
-    return min;
+  public double countTrianglesWithPartition(int p, Intersection intersection) {
+    return countTrianglesWithPartition(new VertexPartitioner(p), intersection);
   }
 
-  public double countTrianglesWithPartition(int p) {
+  /**
+   * Count triangles as countTrianglesWithPartition(p) does, with the
+   * partitions given by a partitioner.
+   *
+   * @param partitioner  Assigns vertices to partitions.
+   * @param intersection Intersection kernel.
+   * @return Weighted triangle count.
+   */
+  public double countTrianglesWithPartition(VertexPartitioner partitioner, Intersection intersection) {
+    long p = partitioner.getPartitionCount();
     if (p <= 1) {
       throw new Error("Partition must be more than 1");
     }
 
-    List<Long> vertices = new ArrayList<>(MAX_SIZE);
-    Iterator<Long> verticesIterator = getAllVertices().iterator();
-    verticesIterator.forEachRemaining(vertices::add);
+    long startTime = System.nanoTime();
 
-    java.util.Collections.sort(vertices, new java.util.Comparator<Long>() {
+    // Rank vertices by degree, cached once per vertex
+    int n = this.adjacencyList.size();
+    long[] vertices = new long[n];
+    int index = 0;
+    for (Long v : getAllVertices()) {
+      vertices[index++] = v;
+    }
+    long sortStartTime = System.nanoTime();
+    Arrays.sort(vertices);
+    sortNanos = System.nanoTime() - sortStartTime;
+
+    long[] rankKeys = new long[n];
+    maxDegree = 0;
+    for (int i = 0; i < n; i++) {
+      long degree = this.adjacencyList.get(vertices[i]).size();
+      rankKeys[i] = ((Integer.MAX_VALUE - degree) << 32) | i;
+      maxDegree = (int) Math.max(maxDegree, degree);
+    }
+    sortStartTime = System.nanoTime();
+    Arrays.sort(rankKeys);
+    sortNanos += System.nanoTime() - sortStartTime;
+
+    long[] rankedVertices = new long[n];
+    int[] partitions = new int[n];
+    HashMap<Long, Integer> rankIndex = new HashMap<>(2 * n);
+    for (int rank = 0; rank < n; rank++) {
+      rankedVertices[rank] = vertices[(int) rankKeys[rank]];
+      partitions[rank] = partitioner.partition(rankedVertices[rank]);
+      rankIndex.put(rankedVertices[rank], rank);
+    }
 
-      @Override
-      public int compare(Long o1, Long o2) {
-        return (degree(o1) > degree(o2) ? -1 : (degree(o1) == degree(o2) ? 0 : 1));
+    // Neighbors of each vertex as ranks, sorted by rank
+    int[][] neighbors = new int[n][];
+    for (int rank = 0; rank < n; rank++) {
+      Set<Long> neighborSet = this.adjacencyList.get(rankedVertices[rank]);
+      int[] neighborRanks = new int[neighborSet.size()];
+      int i = 0;
+      for (Long u : neighborSet) {
+        neighborRanks[i++] = rankIndex.get(u);
       }
-    });
+      neighbors[rank] = neighborRanks;
+    }
+    sortStartTime = System.nanoTime();
+    for (int[] neighborRanks : neighbors) {
+      Arrays.sort(neighborRanks);
+    }
+    long intersectStartTime = System.nanoTime();
+    sortNanos += intersectStartTime - sortStartTime;
+    buildNanos = intersectStartTime - startTime - sortNanos;
 
     // algorithm compact-forward
     double counter = 0.0;
-
-    int l;
-    Iterator<Long> neighborsIterator;
-    Long templ;
-    Long tempk;
-    Long tempi;
-    for (int i = 0; i < vertices.size(); i++) {
-      neighborsIterator = getNeighbors(vertices.get(i)).iterator();
-      while (neighborsIterator.hasNext()) {
-        l = vertices.indexOf(neighborsIterator.next());
-
-        if (l < i) {
-          Integer j = firstNeighborIndex(vertices, vertices.get(i));
-          Integer k = firstNeighborIndex(vertices, vertices.get(l));
-          while ((j < l) && (k < l)) {
-            if (j < k) {
-              j = firstNeighborWithMinDegree(vertices, vertices.get(i), j);
-            } else {
-              if (k < j) {
-                k = firstNeighborWithMinDegree(vertices, vertices.get(l), k);
-              } else {
-                templ = vertices.get(l);
-                tempk = vertices.get(k);
-                tempi = vertices.get(i);
-
-                if (templ % p == tempk % p && tempk % p == tempi % p) {
-                  counter = counter + (1.0 / (p - 1));
-
-                } else {
-                  counter = counter + 1.0;
-                } // counting of the others
-
-                j = firstNeighborWithMinDegree(vertices, tempi, j);
-                k = firstNeighborWithMinDegree(vertices, templ, k);
-
-              }
-            }
-          }
+    int[] common = new int[0];
+    intersectionCount = 0;
+    wedgeCheckCount = 0;
+    type1TriangleCount = 0;
+    type2Or3TriangleCount = 0;
+
+    for (int i = 0; i < n; i++) {
+      int[] iNeighbors = neighbors[i];
+      int iPartition = partitions[i];
+
+      for (int x = 0; x < iNeighbors.length && iNeighbors[x] < i; x++) {
+        int l = iNeighbors[x];
+        int[] lNeighbors = neighbors[l];
+        int lPartition = partitions[l];
+
+        // Intersect the neighbors of i and l ranked before l: those of i are
+        // exactly the first x
+        int lEnd = Arrays.binarySearch(lNeighbors, l);
+        lEnd = lEnd < 0 ? -lEnd - 1 : lEnd;
+        intersectionCount++;
+        wedgeCheckCount += x + lEnd;
+        if (common.length < Math.min(x, lEnd) + Intersection.OUTPUT_PADDING) {
+          common = new int[iNeighbors.length + Intersection.OUTPUT_PADDING];
+        }
+        int commonCount = intersection.intersect(iNeighbors, 0, x, lNeighbors, 0, lEnd, common);
+
+        for (int c = 0; c < commonCount; c++) {
+          int kPartition = partitions[common[c]];
+
+          if (lPartition == kPartition && kPartition == iPartition) {
+            counter = counter + (1.0 / (p - 1));
+            type1TriangleCount++;
+          } else {
+            counter = counter + 1.0;
+            type2Or3TriangleCount++;
+          } // counting of the others
         }
       }
     }
+    intersectNanos = System.nanoTime() - intersectStartTime;
     return counter;
   }
 
+  public int getVertexCount() {
+    return this.adjacencyList.size();
+  }
+
+  // Statistics of the last countTrianglesWithPartition call, as in
+  // CompactForward
+
+  public int getMaxDegree() {
+    return maxDegree;
+  }
+
+  public long getIntersectionCount() {
+    return intersectionCount;
+  }
+
+  public long getWedgeCheckCount() {
+    return wedgeCheckCount;
+  }
+
+  public long getType1TriangleCount() {
+    return type1TriangleCount;
+  }
+
+  public long getType2Or3TriangleCount() {
+    return type2Or3TriangleCount;
+  }
+
+  public long getBuildNanos() {
+    return buildNanos;
+  }
+
+  public long getSortNanos() {
+    return sortNanos;
+  }
+
+  public long getIntersectNanos() {
+    return intersectNanos;
+  }
+
   // public static void main(String[] args) {
   // Graph graph = new Graph();
 
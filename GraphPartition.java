@@ -2,6 +2,8 @@ import java.lang.*;
 import java.io.*;
 import java.util.*;
 
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
 import org.apache.hadoop.fs.Path;
 import org.apache.hadoop.conf.*;
 import org.apache.hadoop.io.*;
@@ -13,15 +15,37 @@ import org.apache.hadoop.util.*;
 public class GraphPartition extends Configured implements Tool {
   public static final Text RESULT_KEY = new Text("triangleCount");
 
-  public static class MapperOne extends Mapper<LongWritable, Text, Text, LongPair> {
-    public void map(LongWritable key, Text value, Context context) throws IOException, InterruptedException {
-      Configuration conf = context.getConfiguration();
-      int p = conf.getInt("partitions", -1);
+  // Directory for the intermediate results of the jobs
+  public static final String DEFAULT_TEMP_PATH = "/user/rayandrew/temp";
+  public static final String TEMP_PATH_CONFIG_KEY = "tempPath";
+
+  final List<ExecutedJob> executedJobs = new ArrayList<ExecutedJob>();
+
+  // Work done by job one's reducers, times summed over all subproblems
+  public static enum SubproblemCounter {
+    SUBPROBLEMS, EDGES_RECEIVED, VERTICES, INTERSECTIONS, WEDGES_CHECKED, TYPE_1_TRIANGLES, TYPE_2_OR_3_TRIANGLES,
+    BUILD_MILLIS, SORT_MILLIS, INTERSECT_MILLIS
+  }
+
+  private static final Log LOG = LogFactory.getLog(GraphPartition.class);
 
-      String[] str = value.toString().split("\\s+");
-      if (str.length > 1) {
-        long node1 = Long.parseLong(str[0]);
-        long node2 = Long.parseLong(str[1]);
+  // The vertex partitioner shared by job one's mappers and reducers
+  static VertexPartitioner vertexPartitioner(Configuration conf) {
+    return VertexPartitioner.fromConf(conf, conf.getInt("partitions", -1));
+  }
+
+  public static class MapperOne extends Mapper<LongWritable, Text, SubproblemKey, LongPair> {
+    final EdgeParser parser = new EdgeParser();
+    SubproblemEmitter emitter;
+
+    public void setup(Context context) {
+      emitter = new SubproblemEmitter(vertexPartitioner(context.getConfiguration()));
+    }
+
+    public void map(LongWritable key, Text value, Context context) throws IOException, InterruptedException {
+      if (parser.parse(value)) {
+        long node1 = parser.first;
+        long node2 = parser.second;
 
         // Ensure the left node index is less than the right node index
         if (node1 < node2) {
@@ -30,53 +54,72 @@ public class GraphPartition extends Configured implements Tool {
           node2 = temp;
         }
 
-        long hashNode1 = node1 % p;
-        long hashNode2 = node2 % p;
-
-        for (int a = 0; a <= p - 2; a++) {
-          for (int b = a + 1; b <= p - 1; b++) {
-            if ((hashNode1 == a) && (hashNode2 == b) || (hashNode1 == b) && (hashNode2 == a)
-                || (hashNode1 == a) && (hashNode2 == a) || (hashNode1 == b) && (hashNode2 == b)) {
-              context.write(new Text(String.valueOf((a) + ',' + String.valueOf(b))),
-                  new LongPair(node1, node2));
-            }
-          }
-        }
-
-        if (hashNode1 != hashNode2) {
-          for (int a = 0; a <= p - 3; a++) {
-            for (int b = a + 1; b <= p - 2; b++) {
-              for (int c = b + 1; c <= p - 1; c++) {
-                if ((hashNode1 == a) && (hashNode2 == a) || (hashNode1 == a) && (hashNode2 == b)
-                    || (hashNode1 == a) && (hashNode2 == c) || (hashNode1 == b) && (hashNode2 == a)
-                    || (hashNode1 == b) && (hashNode2 == b) || (hashNode1 == b) && (hashNode2 == c)
-                    || (hashNode1 == c) && (hashNode2 == a) || (hashNode1 == c) && (hashNode2 == b)
-                    || (hashNode1 == c) && (hashNode2 == c)) {
-                  context.write(new Text(String.valueOf((a) + ',' + String.valueOf(b)) + ',' + String.valueOf(c)),
-                      new LongPair(node1, node2));
-                }
-              }
-            }
-          }
-        }
+        emitter.emit(node1, node2, context);
       }
     }
   }
 
-  public static class ReducerOne extends Reducer<Text, LongPair, NullWritable, DoubleWritable> {
-    public void reduce(Text key, Iterable<LongPair> values, Context context) throws IOException, InterruptedException {
-      Configuration conf = context.getConfiguration();
-      int p = conf.getInt("partitions", -1);
+  public static class ReducerOne extends Reducer<SubproblemKey, LongPair, NullWritable, DoubleWritable> {
+    VertexPartitioner partitioner;
+    MultipleOutputs<NullWritable, DoubleWritable> multipleOutputs;
+    SlowestCalls slowestSubproblems;
+    long buildNanos = 0;
+    long sortNanos = 0;
+    long intersectNanos = 0;
+
+    public void setup(Context context) {
+      partitioner = vertexPartitioner(context.getConfiguration());
+      multipleOutputs = new MultipleOutputs<NullWritable, DoubleWritable>(context);
+      slowestSubproblems = new SlowestCalls(context.getConfiguration());
+    }
 
+    public void reduce(SubproblemKey key, Iterable<LongPair> values, Context context)
+        throws IOException, InterruptedException {
+      long startTime = System.nanoTime();
       Iterator<LongPair> valuesIterator = values.iterator();
       Graph graph = new Graph();
 
+      long edgeCount = 0;
       while (valuesIterator.hasNext()) {
         LongPair e = valuesIterator.next();
         graph.addEdge(e.first, e.second);
+        edgeCount++;
       }
 
-      context.write(NullWritable.get(), new DoubleWritable(graph.countTrianglesWithPartition(p)));
+      context.write(NullWritable.get(),
+          new DoubleWritable(graph.countTrianglesWithPartition(partitioner, Intersection.ADAPTIVE)));
+      SkewReport.write(multipleOutputs, key.get(), edgeCount);
+
+      context.getCounter(SubproblemCounter.SUBPROBLEMS).increment(1);
+      context.getCounter(SubproblemCounter.EDGES_RECEIVED).increment(edgeCount);
+      context.getCounter(SubproblemCounter.VERTICES).increment(graph.getVertexCount());
+      context.getCounter(SubproblemCounter.INTERSECTIONS).increment(graph.getIntersectionCount());
+      context.getCounter(SubproblemCounter.WEDGES_CHECKED).increment(graph.getWedgeCheckCount());
+      context.getCounter(SubproblemCounter.TYPE_1_TRIANGLES).increment(graph.getType1TriangleCount());
+      context.getCounter(SubproblemCounter.TYPE_2_OR_3_TRIANGLES).increment(graph.getType2Or3TriangleCount());
+      buildNanos += graph.getBuildNanos();
+      sortNanos += graph.getSortNanos();
+      intersectNanos += graph.getIntersectNanos();
+
+      long elapsedNanos = System.nanoTime() - startTime;
+      if (slowestSubproblems.isSlow(elapsedNanos) || LOG.isDebugEnabled()) {
+        String description = "subproblem " + key + ": " + edgeCount + " edges, " + graph.getVertexCount()
+            + " vertices, max degree " + graph.getMaxDegree() + ", " + graph.getIntersectionCount()
+            + " intersections, " + graph.getWedgeCheckCount() + " wedges checked, "
+            + graph.getType1TriangleCount() + " type 1 and " + graph.getType2Or3TriangleCount()
+            + " type 2 or 3 triangles, build " + graph.getBuildNanos() / 1000000 + " ms, sort "
+            + graph.getSortNanos() / 1000000 + " ms, intersect " + graph.getIntersectNanos() / 1000000 + " ms";
+        slowestSubproblems.add(elapsedNanos, description);
+        LOG.debug(description);
+      }
+    }
+
+    public void cleanup(Context context) throws IOException, InterruptedException {
+      multipleOutputs.close();
+      context.getCounter(SubproblemCounter.BUILD_MILLIS).increment(buildNanos / 1000000);
+      context.getCounter(SubproblemCounter.SORT_MILLIS).increment(sortNanos / 1000000);
+      context.getCounter(SubproblemCounter.INTERSECT_MILLIS).increment(intersectNanos / 1000000);
+      slowestSubproblems.log(LOG, "subproblems");
     }
   }
 
@@ -105,17 +148,29 @@ public class GraphPartition extends Configured implements Tool {
     }
   }
 
+  /**
+   * Jobs run by the last call to run(), in order, with their wall clock times.
+   *
+   * @return The jobs.
+   */
+  public List<ExecutedJob> getExecutedJobs() {
+    return executedJobs;
+  }
+
   public int run(String[] args) throws Exception {
     /**
      * Job One
      */
     long startTime = System.nanoTime();
     getConf().setInt("partitions", Integer.parseInt(args[2]));
+    VertexPartitioner partitioner = vertexPartitioner(getConf());
+    String tempPath = getConf().get(TEMP_PATH_CONFIG_KEY, DEFAULT_TEMP_PATH);
+    executedJobs.clear();
 
     Job jobOne = new Job(getConf());
     jobOne.setJobName("mapreduce-one");
 
-    jobOne.setMapOutputKeyClass(Text.class);
+    jobOne.setMapOutputKeyClass(SubproblemKey.class);
     jobOne.setMapOutputValueClass(LongPair.class);
 
     jobOne.setOutputKeyClass(NullWritable.class);
@@ -123,10 +178,12 @@ public class GraphPartition extends Configured implements Tool {
 
     jobOne.setJarByClass(GraphPartition.class);
     jobOne.setMapperClass(MapperOne.class);
+    jobOne.setPartitionerClass(SubproblemKey.Partitioner.class);
     jobOne.setReducerClass(ReducerOne.class);
 
     TextInputFormat.addInputPath(jobOne, new Path(args[0]));
-    TextOutputFormat.setOutputPath(jobOne, new Path("/user/rayandrew/temp"));
+    TextOutputFormat.setOutputPath(jobOne, new Path(tempPath));
+    SkewReport.addNamedOutput(jobOne);
 
     Job jobTwo = new Job(getConf());
     jobTwo.setJobName("mapreduce-two");
@@ -141,12 +198,14 @@ public class GraphPartition extends Configured implements Tool {
     jobTwo.setMapperClass(MapperTwo.class);
     jobTwo.setReducerClass(ReducerTwo.class);
 
-    TextInputFormat.addInputPath(jobTwo, new Path("/user/rayandrew/temp"));
+    TextInputFormat.addInputPath(jobTwo, new Path(tempPath));
     TextOutputFormat.setOutputPath(jobTwo, new Path(args[1]));
 
-    int ret = jobOne.waitForCompletion(true) ? 0 : 1;
-    if (ret == 0)
-      ret = jobTwo.waitForCompletion(true) ? 0 : 1;
+    int ret = ExecutedJob.run(jobOne, executedJobs) ? 0 : 1;
+    if (ret == 0) {
+      SkewReport.print(System.out, new Path(tempPath), getConf(), partitioner);
+      ret = ExecutedJob.run(jobTwo, executedJobs) ? 0 : 1;
+    }
 
     long estimatedTime = System.nanoTime() - startTime;
     System.out.println("Estimated Execution Time = " + estimatedTime + " nanoseconds");
@@ -0,0 +1,178 @@
+/**
+ * Sorted set intersection kernels over ranges of ascending, duplicate free int
+ * arrays, as used to find the third vertex of triangles.
+ *
+ * Every kernel writes the common elements in ascending order to out, which must
+ * hold at least the size of the smaller range plus OUTPUT_PADDING, and returns
+ * their count.
+ */
+public enum Intersection {
+  /** Two pointer merge, best for ranges of similar sizes. */
+  MERGE {
+    @Override
+    public int intersect(int[] a, int aFrom, int aTo, int[] b, int bFrom, int bTo, int[] out) {
+      int count = 0;
+      while (aFrom < aTo && bFrom < bTo) {
+        int x = a[aFrom];
+        int y = b[bFrom];
+        if (x < y) {
+          aFrom++;
+        } else if (x > y) {
+          bFrom++;
+        } else {
+          out[count++] = x;
+          aFrom++;
+          bFrom++;
+        }
+      }
+      return count;
+    }
+  },
+
+  /**
+   * Looks every element of the smaller range up in the larger one with an
+   * exponential then binary search, in O(m log(n / m)) for sizes m <= n.
+   */
+  GALLOPING {
+    @Override
+    public int intersect(int[] a, int aFrom, int aTo, int[] b, int bFrom, int bTo, int[] out) {
+      if (aTo - aFrom > bTo - bFrom) {
+        return intersect(b, bFrom, bTo, a, aFrom, aTo, out);
+      }
+
+      int count = 0;
+      for (int i = aFrom; i < aTo && bFrom < bTo; i++) {
+        int x = a[i];
+        bFrom = gallop(b, bFrom, bTo, x);
+        if (bFrom < bTo && b[bFrom] == x) {
+          out[count++] = x;
+          bFrom++;
+        }
+      }
+      return count;
+    }
+  },
+
+  /**
+   * Compares blocks of BLOCK_SIZE elements of both ranges all against all and
+   * advances the block with the smaller last element, with few data dependent
+   * branches. This is the block algorithm of SIMD intersections (Schlegel et
+   * al., Lemire et al.) in scalar code.
+   */
+  BLOCK {
+    @Override
+    public int intersect(int[] a, int aFrom, int aTo, int[] b, int bFrom, int bTo, int[] out) {
+      int count = 0;
+      while (aFrom + BLOCK_SIZE <= aTo && bFrom + BLOCK_SIZE <= bTo) {
+        int b0 = b[bFrom];
+        int b1 = b[bFrom + 1];
+        int b2 = b[bFrom + 2];
+        int b3 = b[bFrom + 3];
+        for (int i = aFrom; i < aFrom + BLOCK_SIZE; i++) {
+          int x = a[i];
+          out[count] = x;
+          count += (x == b0 ? 1 : 0) | (x == b1 ? 1 : 0) | (x == b2 ? 1 : 0) | (x == b3 ? 1 : 0);
+        }
+
+        int aLast = a[aFrom + BLOCK_SIZE - 1];
+        if (aLast <= b3) {
+          aFrom += BLOCK_SIZE;
+        }
+        if (aLast >= b3) {
+          bFrom += BLOCK_SIZE;
+        }
+      }
+
+      // Branchless merge of the remainder
+      while (aFrom < aTo && bFrom < bTo) {
+        int x = a[aFrom];
+        int y = b[bFrom];
+        out[count] = x;
+        count += x == y ? 1 : 0;
+        aFrom += x <= y ? 1 : 0;
+        bFrom += x >= y ? 1 : 0;
+      }
+      return count;
+    }
+  },
+
+  /**
+   * GALLOPING when one range is at least GALLOPING_RATIO times larger than the
+   * other, BLOCK when both hold a few blocks, MERGE otherwise.
+   */
+  ADAPTIVE {
+    @Override
+    public int intersect(int[] a, int aFrom, int aTo, int[] b, int bFrom, int bTo, int[] out) {
+      int aSize = aTo - aFrom;
+      int bSize = bTo - bFrom;
+      if (aSize == 0 || bSize == 0) {
+        return 0;
+      }
+
+      Intersection kernel = MERGE;
+      if (aSize >= GALLOPING_RATIO * bSize || bSize >= GALLOPING_RATIO * aSize) {
+        kernel = GALLOPING;
+      } else if (aSize >= BLOCK_MIN_SIZE && bSize >= BLOCK_MIN_SIZE) {
+        kernel = BLOCK;
+      }
+      return kernel.intersect(a, aFrom, aTo, b, bFrom, bTo, out);
+    }
+  };
+
+  public static final int BLOCK_SIZE = 4;
+  public static final int BLOCK_MIN_SIZE = 4 * BLOCK_SIZE;
+  public static final int GALLOPING_RATIO = 32;
+
+  // BLOCK writes every element of a block to out before knowing whether it
+  // matched
+  public static final int OUTPUT_PADDING = BLOCK_SIZE;
+
+  /**
+   * Intersect a[aFrom, aTo) and b[bFrom, bTo).
+   *
+   * @return The number of common elements written to out.
+   */
+  public abstract int intersect(int[] a, int aFrom, int aTo, int[] b, int bFrom, int bTo, int[] out);
+
+  /**
+   * Parse a kernel name, case insensitive.
+   *
+   * @param name "merge", "galloping", "block" or "adaptive".
+   * @return The kernel.
+   */
+  public static Intersection forName(String name) {
+    try {
+      return valueOf(name.toUpperCase());
+    } catch (IllegalArgumentException e) {
+      throw new IllegalArgumentException("Unknown intersection kernel: " + name);
+    }
+  }
+
+  // First index in [from, to) whose element is >= x, probing from + 1, + 2,
+  // + 4, ... before a binary search of the last gap
+  private static int gallop(int[] array, int from, int to, int x) {
+    if (from >= to || array[from] >= x) {
+      return from;
+    }
+    int low = from;
+    int step = 1;
+    int high = from + 1;
+    while (high < to && array[high] < x) {
+      low = high;
+      step <<= 1;
+      high = from + step;
+    }
+    high = Math.min(high, to);
+
+    // array[low] < x, and array[high] >= x if high < to
+    while (low + 1 < high) {
+      int middle = (low + high) >>> 1;
+      if (array[middle] < x) {
+        low = middle;
+      } else {
+        high = middle;
+      }
+    }
+    return high;
+  }
+}
@@ -0,0 +1,426 @@
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Single machine, multi-threaded Triangle Type Partition triangle counting for
+ * graphs that fit in memory, without running any MapReduce job.
+ *
+ * The edge list is read once, deduplicated and stored as a shared primitive
+ * array grouped by the pair of partitions of its ends. Every one
+ * of the C(p, 2) + C(p, 3) subproblems is then solved as a fork-join task with
+ * the same CompactForward kernel TriangleTypePartition.ReducerTwo uses, from
+ * the edge groups it covers.
+ *
+ * Usage: LocalTriangleTypePartition input output partitionCount [threadCount]
+ * where input is a local edge list file or a directory of them, in text or in
+ * the binary format of EdgeListConverter (memory mapped), and the result
+ * is written to output/part-r-00000 in the same format as TriangleTypePartition.
+ * The partitionHash and partitionSeed system properties pick the
+ * VertexPartitioner, and edgeSampleProbability and edgeSampleSeed the
+ * approximate mode of EdgeSampler, as the -D options of TriangleTypePartition
+ * do.
+ */
+public class LocalTriangleTypePartition {
+
+  public static final int READ_BUFFER_SIZE = 1 << 20;
+  public static final int ESTIMATED_EDGE_COUNT_PER_SUBPROBLEM = 1000000;
+
+  // Same output keys as TriangleTypePartition, without loading Hadoop classes
+  public static final String TYPE_1_TRIANGLE_COUNT_KEY = "A";
+  public static final String TYPE_2_OR_3_TRIANGLE_COUNT_KEY = "B";
+
+  private final long p;
+  private final VertexPartitioner partitioner;
+  private final EdgeSampler sampler;
+  private long[] vertexIds; // vertex id by index, ascending
+  private long[] edges; // packed (index1 << 32 | index2) with index1 < index2, grouped by partition pair
+  private int[] groupOffsets; // edges of partition pair (a, b), a <= b: [offsets[a * p + b], offsets[a * p + b + 1])
+
+  // Triangles of each sampled edge, summed as job two's edgeTriangles output
+  private AtomicLongArray edgeTriangles = null;
+  private long sharedEdgeTrianglePairCount = 0;
+
+  // Edges as read, before deduplication
+  private long[] rawEdges;
+  private int rawCount;
+
+  private final ThreadLocal<CompactForward> graphs = new ThreadLocal<CompactForward>() {
+    @Override
+    protected CompactForward initialValue() {
+      return new CompactForward(ESTIMATED_EDGE_COUNT_PER_SUBPROBLEM);
+    }
+  };
+
+  /**
+   * Create a new engine.
+   *
+   * @param p Partition count.
+   */
+  public LocalTriangleTypePartition(long p) {
+    this(new VertexPartitioner(p));
+  }
+
+  /**
+   * Create a new engine.
+   *
+   * @param partitioner Assigns vertices to partitions.
+   */
+  public LocalTriangleTypePartition(VertexPartitioner partitioner) {
+    this(partitioner, new EdgeSampler(1, EdgeSampler.DEFAULT_SEED));
+  }
+
+  /**
+   * Create a new engine counting the triangles of a sample of the edges.
+   *
+   * @param partitioner Assigns vertices to partitions.
+   * @param sampler     Picks the edges to load.
+   */
+  public LocalTriangleTypePartition(VertexPartitioner partitioner, EdgeSampler sampler) {
+    if (partitioner.getPartitionCount() < 2) {
+      throw new IllegalArgumentException("Partition count must be at least 2");
+    }
+    this.p = partitioner.getPartitionCount();
+    this.partitioner = partitioner;
+    this.sampler = sampler;
+  }
+
+  /**
+   * Load an edge list and index it by partition pair. Duplicate edges, self
+   * loops and the edges the sampler drops are dropped.
+   *
+   * @param files Files of the input, text edge lists or binary edge lists
+   *              written by EdgeListConverter.
+   */
+  public void load(List<File> files) throws IOException {
+    // Read raw edges
+    rawEdges = new long[2 * 1024];
+    rawCount = 0;
+    EdgeParser parser = new EdgeParser();
+    byte[] buffer = new byte[READ_BUFFER_SIZE];
+    for (File file : files) {
+      if (isBinaryEdgeList(file)) {
+        try (BinaryEdgeList.MappedReader reader = new BinaryEdgeList.MappedReader(file)) {
+          while (reader.next()) {
+            addRawEdge(reader.first, reader.second);
+          }
+        }
+        continue;
+      }
+
+      try (InputStream source = new FileInputStream(file)) {
+        int filled = 0;
+        while (true) {
+          int read = source.read(buffer, filled, buffer.length - filled);
+          if (read < 0) {
+            // Last line without a line break
+            addRawEdge(parser, buffer, 0, filled);
+            break;
+          }
+
+          int end = filled + read;
+          int lineStart = 0;
+          for (int i = filled; i < end; i++) {
+            if (buffer[i] == '\n') {
+              addRawEdge(parser, buffer, lineStart, i);
+              lineStart = i + 1;
+            }
+          }
+
+          // Keep the incomplete last line for the next read
+          filled = end - lineStart;
+          System.arraycopy(buffer, lineStart, buffer, 0, filled);
+          if (filled == buffer.length) {
+            buffer = Arrays.copyOf(buffer, 2 * buffer.length);
+          }
+        }
+      }
+    }
+    // Relabel vertices with dense indices so an edge packs into one long
+    long[] ids = Arrays.copyOf(rawEdges, 2 * rawCount);
+    Arrays.parallelSort(ids);
+    int n = 0;
+    for (int i = 0; i < ids.length; i++) {
+      if (n == 0 || ids[n - 1] != ids[i]) {
+        ids[n++] = ids[i];
+      }
+    }
+    vertexIds = Arrays.copyOf(ids, n);
+
+    long[] packed = new long[rawCount];
+    for (int e = 0; e < rawCount; e++) {
+      long index1 = Arrays.binarySearch(vertexIds, rawEdges[2 * e]);
+      long index2 = Arrays.binarySearch(vertexIds, rawEdges[2 * e + 1]);
+      packed[e] = index1 < index2 ? (index1 << 32) | index2 : (index2 << 32) | index1;
+    }
+    rawEdges = null;
+    rawCount = 0;
+
+    // Remove duplicate edges, and those out of the sample
+    Arrays.parallelSort(packed);
+    int m = 0;
+    for (int e = 0; e < packed.length; e++) {
+      if ((m == 0 || packed[m - 1] != packed[e])
+          && sampler.keep(vertexIds[(int) (packed[e] >>> 32)], vertexIds[(int) packed[e]])) {
+        packed[m++] = packed[e];
+      }
+    }
+
+    // Group edges by partition pair with a counting sort
+    int groupCount = (int) (p * p);
+    groupOffsets = new int[groupCount + 1];
+    for (int e = 0; e < m; e++) {
+      groupOffsets[group(packed[e]) + 1]++;
+    }
+    for (int g = 0; g < groupCount; g++) {
+      groupOffsets[g + 1] += groupOffsets[g];
+    }
+    int[] positions = Arrays.copyOf(groupOffsets, groupCount);
+    edges = new long[m];
+    for (int e = 0; e < m; e++) {
+      edges[positions[group(packed[e])]++] = packed[e];
+    }
+  }
+
+  private void addRawEdge(EdgeParser parser, byte[] buffer, int start, int end) {
+    if (parser.parse(buffer, start, end)) {
+      addRawEdge(parser.first, parser.second);
+    }
+  }
+
+  private void addRawEdge(long vertex1, long vertex2) {
+    if (vertex1 != vertex2) {
+      if (2 * rawCount + 2 > rawEdges.length) {
+        rawEdges = Arrays.copyOf(rawEdges, 2 * rawEdges.length);
+      }
+      rawEdges[2 * rawCount] = vertex1;
+      rawEdges[2 * rawCount + 1] = vertex2;
+      rawCount++;
+    }
+  }
+
+  private static boolean isBinaryEdgeList(File file) throws IOException {
+    byte[] header = new byte[4];
+    try (InputStream in = new FileInputStream(file)) {
+      int length = 0;
+      int read;
+      while (length < header.length && (read = in.read(header, length, header.length - length)) > 0) {
+        length += read;
+      }
+      return BinaryEdgeList.hasMagic(header, length);
+    }
+  }
+
+  private int group(long edge) {
+    long partition1 = partitioner.partition(vertexIds[(int) (edge >>> 32)]);
+    long partition2 = partitioner.partition(vertexIds[(int) edge]);
+    return (int) (Math.min(partition1, partition2) * p + Math.max(partition1, partition2));
+  }
+
+  public int getVertexCount() {
+    return vertexIds.length;
+  }
+
+  public int getEdgeCount() {
+    return edges.length;
+  }
+
+  /**
+   * Count the triangles of the loaded graph.
+   *
+   * @param pool Pool to run the subproblems in.
+   * @return Type 1 triangle count (already divided by p - 1) and type 2 or 3
+   *         triangle count.
+   */
+  public long[] countTriangles(ForkJoinPool pool) {
+    // Subproblems as partition triples, NO_PARTITION third for pairs
+    long[] subproblems = new long[3 * (int) Subproblems.subproblemCount(p)];
+    int count = 0;
+    for (long a = 0; a < p; a++) {
+      for (long b = a + 1; b < p; b++) {
+        subproblems[3 * count] = a;
+        subproblems[3 * count + 1] = b;
+        subproblems[3 * count + 2] = Subproblems.NO_PARTITION;
+        count++;
+      }
+    }
+    for (long a = 0; a < p; a++) {
+      for (long b = a + 1; b < p; b++) {
+        for (long c = b + 1; c < p; c++) {
+          subproblems[3 * count] = a;
+          subproblems[3 * count + 1] = b;
+          subproblems[3 * count + 2] = c;
+          count++;
+        }
+      }
+    }
+
+    edgeTriangles = sampler.isSampling() ? new AtomicLongArray(edges.length) : null;
+    long[] counts = pool.invoke(new SubproblemTask(subproblems, 0, count));
+    counts[0] /= (p - 1);
+
+    sharedEdgeTrianglePairCount = 0;
+    for (int e = 0; edgeTriangles != null && e < edgeTriangles.length(); e++) {
+      long triangleCount = edgeTriangles.get(e) / (p - 1);
+      sharedEdgeTrianglePairCount += triangleCount * (triangleCount - 1) / 2;
+    }
+    edgeTriangles = null;
+    return counts;
+  }
+
+  /**
+   * Pairs of triangles sharing an edge found by the last countTriangles(), in
+   * approximate mode.
+   */
+  public long getSharedEdgeTrianglePairCount() {
+    return sharedEdgeTrianglePairCount;
+  }
+
+  // Adds the triangle counts of a subproblem's edges to edgeTriangles, weighing
+  // type 2 and 3 triangles p - 1 times as their type 1 ones are counted in p - 1
+  // subproblems
+  private final CompactForward.EdgeTriangleVisitor edgeTriangleCounter = new CompactForward.EdgeTriangleVisitor() {
+    public void visit(long u, long v, int type1TriangleCount, int type2Or3TriangleCount) {
+      long index1 = Arrays.binarySearch(vertexIds, u);
+      long index2 = Arrays.binarySearch(vertexIds, v);
+      long edge = index1 < index2 ? (index1 << 32) | index2 : (index2 << 32) | index1;
+      int g = group(edge);
+      int e = Arrays.binarySearch(edges, groupOffsets[g], groupOffsets[g + 1], edge);
+      edgeTriangles.addAndGet(e, type1TriangleCount + (p - 1) * type2Or3TriangleCount);
+    }
+  };
+
+  // Solves a range of subproblems, splitting it in halves down to one subproblem
+  private class SubproblemTask extends RecursiveTask<long[]> {
+    private static final long serialVersionUID = 1L;
+
+    final long[] subproblems;
+    final int from;
+    final int to;
+
+    SubproblemTask(long[] subproblems, int from, int to) {
+      this.subproblems = subproblems;
+      this.from = from;
+      this.to = to;
+    }
+
+    @Override
+    protected long[] compute() {
+      if (to - from > 1) {
+        int middle = (from + to) >>> 1;
+        SubproblemTask left = new SubproblemTask(subproblems, from, middle);
+        left.fork();
+        long[] rightCounts = new SubproblemTask(subproblems, middle, to).compute();
+        long[] leftCounts = left.join();
+        return new long[] { leftCounts[0] + rightCounts[0], leftCounts[1] + rightCounts[1] };
+      }
+
+      long a = subproblems[3 * from];
+      long b = subproblems[3 * from + 1];
+      long c = subproblems[3 * from + 2];
+      CompactForward graph = graphs.get();
+      if (c == Subproblems.NO_PARTITION) {
+        addGroup(graph, a, a);
+        addGroup(graph, a, b);
+        addGroup(graph, b, b);
+      } else {
+        addGroup(graph, a, b);
+        addGroup(graph, a, c);
+        addGroup(graph, b, c);
+      }
+
+      graph.build();
+      graph.setEdgeTriangleCounting(edgeTriangles != null);
+      graph.countTriangles(partitioner);
+      long[] counts = new long[] { graph.getType1TriangleCount(), graph.getType2Or3TriangleCount() };
+      if (edgeTriangles != null) {
+        try {
+          graph.visitEdgeTriangleCounts(edgeTriangleCounter);
+        } catch (IOException | InterruptedException e) {
+          // edgeTriangleCounter neither writes nor waits
+          throw new IllegalStateException(e);
+        }
+      }
+      graph.clear();
+      return counts;
+    }
+
+    private void addGroup(CompactForward graph, long partition1, long partition2) {
+      int g = (int) (partition1 * p + partition2);
+      for (int e = groupOffsets[g]; e < groupOffsets[g + 1]; e++) {
+        graph.addEdge(vertexIds[(int) (edges[e] >>> 32)], vertexIds[(int) edges[e]]);
+      }
+    }
+  }
+
+  // Lists the files of an input path, skipping hidden ones like Hadoop does
+  static List<File> inputFiles(File input) {
+    List<File> files = new ArrayList<File>();
+    if (input.isDirectory()) {
+      File[] children = input.listFiles();
+      Arrays.sort(children);
+      for (File child : children) {
+        if (child.isFile() && !child.getName().startsWith("_") && !child.getName().startsWith(".")) {
+          files.add(child);
+        }
+      }
+    } else {
+      files.add(input);
+    }
+    return files;
+  }
+
+  public static void main(String[] args) throws Exception {
+    String inputPath = args[0];
+    String outputPath = args[1];
+    long partitionCount = Long.parseLong(args[2]);
+    int threadCount = args.length > 3 ? Integer.parseInt(args[3]) : Runtime.getRuntime().availableProcessors();
+
+    long startTime = System.nanoTime();
+
+    // Fail before loading and counting the graph
+    File outputDirectory = new File(outputPath);
+    if (outputDirectory.exists()) {
+      throw new IOException("Output directory " + outputPath + " already exists");
+    }
+
+    VertexPartitioner partitioner = VertexPartitioner.forName(
+        System.getProperty(VertexPartitioner.HASH_CONFIG_KEY, VertexPartitioner.DEFAULT_HASH),
+        Long.getLong(VertexPartitioner.SEED_CONFIG_KEY, VertexPartitioner.DEFAULT_SEED), partitionCount);
+    EdgeSampler sampler = new EdgeSampler(
+        Double.parseDouble(
+            System.getProperty(EdgeSampler.PROBABILITY_CONFIG_KEY, String.valueOf(EdgeSampler.DEFAULT_PROBABILITY))),
+        Long.getLong(EdgeSampler.SEED_CONFIG_KEY, EdgeSampler.DEFAULT_SEED));
+    LocalTriangleTypePartition engine = new LocalTriangleTypePartition(partitioner, sampler);
+    engine.load(inputFiles(new File(inputPath)));
+    System.out.println("Loaded " + engine.getVertexCount() + " vertices and " + engine.getEdgeCount() + " edges");
+
+    ForkJoinPool pool = new ForkJoinPool(threadCount);
+    long[] counts;
+    try {
+      counts = engine.countTriangles(pool);
+    } finally {
+      pool.shutdown();
+    }
+    if (sampler.isSampling()) {
+      sampler.print(System.out, counts[0] + counts[1], engine.getSharedEdgeTrianglePairCount());
+      counts = new long[] { Math.round(sampler.estimate(counts[0])), Math.round(sampler.estimate(counts[1])) };
+    }
+
+    outputDirectory.mkdirs();
+    try (PrintWriter writer = new PrintWriter(new OutputStreamWriter(
+        new FileOutputStream(new File(outputDirectory, "part-r-00000")), StandardCharsets.UTF_8))) {
+      writer.println(TYPE_1_TRIANGLE_COUNT_KEY + "\t" + counts[0]);
+      writer.println(TYPE_2_OR_3_TRIANGLE_COUNT_KEY + "\t" + counts[1]);
+    }
+    System.out.println("Triangle count: " + (counts[0] + counts[1]));
+
+    long endTime = System.nanoTime();
+
+    long executionWallClockTime = endTime - startTime;
+    System.out.println("Execution wall clock time: " + (executionWallClockTime / 1000000000) + " seconds");
+  }
+}
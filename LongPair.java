@@ -17,6 +17,11 @@ public class LongPair implements WritableComparable<LongPair> {
     this.second = second;
   }
 
+  public void set(long first, long second) {
+    this.first = first;
+    this.second = second;
+  }
+
   /**
    * Read the two integers. Encoded as: MIN_VALUE -> 0, 0 -> -MIN_VALUE,
    * MAX_VALUE-> -1
@@ -0,0 +1,131 @@
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+import org.apache.hadoop.io.WritableComparable;
+import org.apache.hadoop.io.WritableComparator;
+import org.apache.hadoop.mapreduce.Partitioner;
+
+public class LongTriple implements WritableComparable<LongTriple> {
+  public long first = 0;
+  public long second = 0;
+  public long third = 0;
+
+  public LongTriple() {}
+
+  public LongTriple(long first, long second, long third) {
+    this.first = first;
+    this.second = second;
+    this.third = third;
+  }
+
+  public void set(long first, long second, long third) {
+    this.first = first;
+    this.second = second;
+    this.third = third;
+  }
+
+  /**
+   * Read the three integers. Encoded as: MIN_VALUE -> 0, 0 -> -MIN_VALUE,
+   * MAX_VALUE-> -1
+   */
+  @Override
+  public void readFields(DataInput in) throws IOException {
+    this.first = in.readLong() + Long.MIN_VALUE;
+    this.second = in.readLong() + Long.MIN_VALUE;
+    this.third = in.readLong() + Long.MIN_VALUE;
+  }
+
+  @Override
+  public void write(DataOutput out) throws IOException {
+    out.writeLong(this.first - Long.MIN_VALUE);
+    out.writeLong(this.second - Long.MIN_VALUE);
+    out.writeLong(this.third - Long.MIN_VALUE);
+  }
+
+  @Override
+  public int hashCode() {
+    return ((int) this.first * 157 + (int) this.second) * 157 + (int) this.third;
+  }
+
+  @Override
+  public boolean equals(Object right) {
+    if (right instanceof LongTriple) {
+      LongTriple r = (LongTriple) right;
+      return r.first == first && r.second == this.second && r.third == this.third;
+    } else {
+      return false;
+    }
+  }
+
+  @Override
+  public String toString() {
+    return first + "," + second + "," + third;
+  }
+
+  /** A Comparator that compares serialized LongTriple. */
+  public static class Comparator extends WritableComparator {
+    public Comparator() {
+      super(LongTriple.class);
+    }
+
+    public int compare(byte[] b1, int s1, int l1, byte[] b2, int s2, int l2) {
+      return compareBytes(b1, s1, l1, b2, s2, l2);
+    }
+  }
+
+  static { // register this comparator
+    WritableComparator.define(LongTriple.class, new Comparator());
+  }
+
+  /**
+   * A grouping Comparator that compares only the first two integers of
+   * serialized LongTriple, so that the third one can be used for secondary
+   * sorting.
+   */
+  public static class FirstTwoComparator extends WritableComparator {
+    public FirstTwoComparator() {
+      super(LongTriple.class);
+    }
+
+    public int compare(byte[] b1, int s1, int l1, byte[] b2, int s2, int l2) {
+      return compareBytes(b1, s1, 16, b2, s2, 16);
+    }
+
+    // WritableComparator declares this method with raw types, so overriding
+    // it with WritableComparable<?> does not compile
+    @Override
+    @SuppressWarnings("rawtypes")
+    public int compare(WritableComparable a, WritableComparable b) {
+      LongTriple t1 = (LongTriple) a;
+      LongTriple t2 = (LongTriple) b;
+      if (t1.first != t2.first) {
+        return t1.first < t2.first ? -1 : 1;
+      } else if (t1.second != t2.second) {
+        return t1.second < t2.second ? -1 : 1;
+      } else {
+        return 0;
+      }
+    }
+  }
+
+  /** A Partitioner that only looks at the first two integers. */
+  public static class FirstTwoPartitioner<V> extends Partitioner<LongTriple, V> {
+    public int getPartition(LongTriple key, V value, int numPartitions) {
+      return (((int) key.first * 157 + (int) key.second) & Integer.MAX_VALUE) % numPartitions;
+    }
+  }
+
+  @Override
+  public int compareTo(LongTriple o) {
+    if (this.first != o.first) {
+      return this.first < o.first ? -1 : 1;
+    } else if (this.second != o.second) {
+      return this.second < o.second ? -1 : 1;
+    } else if (this.third != o.third) {
+      return this.third < o.third ? -1 : 1;
+    } else {
+      return 0;
+    }
+  }
+}
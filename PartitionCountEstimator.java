@@ -0,0 +1,237 @@
+import java.io.*;
+import java.util.*;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FileStatus;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.io.Text;
+import org.apache.hadoop.mapreduce.RecordReader;
+import org.apache.hadoop.mapreduce.TaskAttemptContext;
+import org.apache.hadoop.mapreduce.TaskAttemptID;
+import org.apache.hadoop.mapreduce.lib.input.FileSplit;
+import org.apache.hadoop.mapreduce.lib.input.LineRecordReader;
+import org.apache.hadoop.mapreduce.task.TaskAttemptContextImpl;
+
+/**
+ * Picks the Triangle Type Partition partition count when it is given as
+ * "auto", from evenly spaced chunks of the input read in the driver.
+ *
+ * With p partitions, every edge is shuffled p - 1 times and the largest
+ * subproblems, those of three partitions, hold about 9 / p^2 of the edges plus
+ * 3 / p of the edges of the highest degree vertex. The smallest p whose largest
+ * subproblem fits the reducer memory budget is chosen, so the shuffle stays as
+ * small as memory allows.
+ */
+public class PartitionCountEstimator {
+  public static final String AUTO = "auto";
+
+  public static final String SAMPLE_BYTES_CONFIG_KEY = "partitionSampleBytes";
+  public static final long DEFAULT_SAMPLE_BYTES = 16L << 20;
+  public static final int SAMPLE_CHUNK_COUNT = 32;
+
+  // Heap bytes a subproblem may take, by default DEFAULT_HEAP_FRACTION of the
+  // reduce container
+  public static final String MEMORY_BUDGET_CONFIG_KEY = "subproblemMemoryBytes";
+  public static final int DEFAULT_REDUCE_MEMORY_MB = 1024;
+
+  private final Configuration conf;
+
+  private long totalBytes = 0;
+  private long sampledBytes = 0;
+  private long sampledEdgeCount = 0;
+  private long maxSampledDegree = 0;
+
+  /**
+   * @param conf Job configuration.
+   */
+  public PartitionCountEstimator(Configuration conf) {
+    this.conf = conf;
+  }
+
+  /**
+   * Read the sample. Degrees are counted on the second endpoint of the sampled
+   * edges, whose occurrences, unlike those of the first, are not clustered in
+   * edge lists sorted by first endpoint, such as converted binary inputs.
+   *
+   * @param input  Input path, as given to the driver.
+   * @param binary Whether the input is a BinaryEdgeList.
+   */
+  public void sample(Path input, boolean binary) throws IOException, InterruptedException {
+    FileSystem fs = input.getFileSystem(conf);
+    FileStatus[] statuses = fs.globStatus(input);
+    if (statuses == null) {
+      throw new FileNotFoundException("Input path does not exist: " + input);
+    }
+    List<FileStatus> files = new ArrayList<FileStatus>();
+    for (FileStatus status : statuses) {
+      for (FileStatus file : status.isDirectory() ? fs.listStatus(status.getPath()) : new FileStatus[] { status }) {
+        String name = file.getPath().getName();
+        if (!file.isDirectory() && !name.startsWith("_") && !name.startsWith(".")) {
+          files.add(file);
+          totalBytes += file.getLen();
+        }
+      }
+    }
+
+    long sampleBytes = conf.getLong(SAMPLE_BYTES_CONFIG_KEY, DEFAULT_SAMPLE_BYTES);
+    long[] seconds = new long[1024];
+    int secondCount = 0;
+    TaskAttemptContext context = new TaskAttemptContextImpl(conf, new TaskAttemptID());
+
+    List<FileSplit> chunks = new ArrayList<FileSplit>();
+    if (totalBytes <= sampleBytes) {
+      for (FileStatus file : files) {
+        chunks.add(new FileSplit(file.getPath(), 0, file.getLen(), null));
+      }
+    } else {
+      // Chunks centered on evenly spaced offsets of the concatenated files
+      long chunkBytes = sampleBytes / SAMPLE_CHUNK_COUNT;
+      for (int i = 0; i < SAMPLE_CHUNK_COUNT; i++) {
+        long offset = (long) ((i + 0.5) * totalBytes / SAMPLE_CHUNK_COUNT) - chunkBytes / 2;
+        for (FileStatus file : files) {
+          if (offset < file.getLen()) {
+            long start = Math.max(0, offset);
+            chunks.add(new FileSplit(file.getPath(), start, Math.min(chunkBytes, file.getLen() - start), null));
+            break;
+          }
+          offset -= file.getLen();
+        }
+      }
+    }
+
+    EdgeParser parser = new EdgeParser();
+    for (FileSplit chunk : chunks) {
+      sampledBytes += chunk.getLength();
+      RecordReader<?, ?> reader = binary ? new BinaryEdgeListInputFormat.BinaryEdgeListRecordReader()
+          : new LineRecordReader();
+      try {
+        reader.initialize(chunk, context);
+        while (reader.nextKeyValue()) {
+          long second;
+          if (binary) {
+            second = ((LongPair) reader.getCurrentKey()).second;
+          } else if (parser.parse((Text) reader.getCurrentValue()) && parser.first != parser.second) {
+            second = parser.second;
+          } else {
+            continue;
+          }
+
+          sampledEdgeCount++;
+          if (secondCount == seconds.length) {
+            seconds = Arrays.copyOf(seconds, 2 * secondCount);
+          }
+          seconds[secondCount++] = second;
+        }
+      } finally {
+        reader.close();
+      }
+    }
+
+    Arrays.sort(seconds, 0, secondCount);
+    long degree = 0;
+    for (int i = 0; i < secondCount; i++) {
+      degree = i > 0 && seconds[i] == seconds[i - 1] ? degree + 1 : 1;
+      maxSampledDegree = Math.max(maxSampledDegree, degree);
+    }
+  }
+
+  private double sampledFraction() {
+    return sampledBytes == 0 ? 1 : (double) sampledBytes / totalBytes;
+  }
+
+  /** Estimated input edge count, duplicates included for text inputs. */
+  public long getEstimatedEdgeCount() {
+    return (long) Math.ceil(sampledEdgeCount / sampledFraction());
+  }
+
+  public long getEstimatedMaxDegree() {
+    return (long) Math.ceil(maxSampledDegree / sampledFraction());
+  }
+
+  /**
+   * Estimated edge count of the largest subproblem with p partitions.
+   *
+   * @param p Partition count.
+   * @return The edge count.
+   */
+  public long estimateLargestSubproblem(long p) {
+    long m = getEstimatedEdgeCount();
+    return (long) Math.min(m, 9.0 * m / (p * p) + 3.0 * getEstimatedMaxDegree() / p);
+  }
+
+  /**
+   * Edges a subproblem may hold: what fits in subproblemMemoryBytes, and no
+   * more than maxSubproblemEdges when it is set, so that nothing is spilled.
+   */
+  public long getEdgeBudget() {
+    // Left unset (-1) unless the cluster sizes reduce containers
+    int reduceMemoryMb = conf.getInt("mapreduce.reduce.memory.mb", -1);
+    if (reduceMemoryMb <= 0) {
+      reduceMemoryMb = DEFAULT_REDUCE_MEMORY_MB;
+    }
+    long memoryBytes = conf.getLong(MEMORY_BUDGET_CONFIG_KEY,
+        (long) (SpilledSubproblem.DEFAULT_HEAP_FRACTION * reduceMemoryMb * (1L << 20)));
+    long edgeBudget = memoryBytes / CompactForward.ESTIMATED_BYTES_PER_EDGE;
+    return Math.min(edgeBudget, conf.getLong(SpilledSubproblem.MAX_EDGE_COUNT_CONFIG_KEY, Long.MAX_VALUE));
+  }
+
+  /** The largest partition count whose subproblem ids fit an int. */
+  public static long maxPartitionCount() {
+    long p = 2;
+    while (Subproblems.subproblemCount(p + 1) <= Integer.MAX_VALUE) {
+      p++;
+    }
+    return p;
+  }
+
+  // Fewest partitions that give every reduce task a subproblem
+  private long minPartitionCount() {
+    int reduceTaskCount = conf.getInt("mapreduce.job.reduces", 1);
+    long max = maxPartitionCount();
+    long p = 2;
+    while (Subproblems.subproblemCount(p) < reduceTaskCount && p < max) {
+      p++;
+    }
+    return p;
+  }
+
+  /**
+   * The smallest partition count at least minPartitionCount whose largest
+   * subproblem fits the edge budget, or maxPartitionCount when none does.
+   */
+  public long choosePartitionCount() {
+    long edgeBudget = getEdgeBudget();
+    long max = maxPartitionCount();
+    long p = minPartitionCount();
+    while (p < max && estimateLargestSubproblem(p) > edgeBudget) {
+      p++;
+    }
+    return p;
+  }
+
+  /**
+   * Print the sample and why p was chosen.
+   *
+   * @param out Where to print.
+   * @param p   The chosen partition count.
+   */
+  public void print(PrintStream out, long p) {
+    long m = getEstimatedEdgeCount();
+    long edgeBudget = getEdgeBudget();
+    out.println("Partition count auto: sampled " + sampledBytes + " of " + totalBytes + " input bytes, "
+        + sampledEdgeCount + " edges");
+    out.println("  Estimated " + m + " edges, max degree " + getEstimatedMaxDegree() + ", reducer budget "
+        + edgeBudget + " edges");
+    out.println("  Chose " + p + " partitions: largest subproblem about " + estimateLargestSubproblem(p)
+        + " edges, shuffle about " + m * (p - 1) + " edges (" + (p - 1) + " times the input)");
+    if (estimateLargestSubproblem(p) > edgeBudget) {
+      out.println("  No partition count fits the budget, large subproblems will be spilled");
+    } else if (p == minPartitionCount() && p > 2) {
+      out.println("  Fewer partitions would leave reduce tasks without a subproblem");
+    } else if (p > 2) {
+      out.println("  " + (p - 1) + " partitions would give subproblems of about " + estimateLargestSubproblem(p - 1)
+          + " edges");
+    }
+  }
+}
@@ -0,0 +1,124 @@
+import java.io.*;
+import java.util.*;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FileStatus;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.io.IntWritable;
+import org.apache.hadoop.io.LongWritable;
+import org.apache.hadoop.io.SequenceFile;
+import org.apache.hadoop.mapreduce.Job;
+import org.apache.hadoop.mapreduce.lib.output.MultipleOutputs;
+import org.apache.hadoop.mapreduce.lib.output.SequenceFileOutputFormat;
+
+/**
+ * Edge counts of the Triangle Type Partition subproblems, written by the
+ * reducers next to their output, and a report of how evenly the vertex
+ * partitioning spread the edges over the subproblems.
+ */
+public class SkewReport {
+  public static final String NAMED_OUTPUT = "subproblems";
+
+  // Files start with an underscore so that jobs reading the reducers' output
+  // directory skip them
+  public static final String BASE_OUTPUT_PATH = "_subproblems";
+
+  public static final int LARGEST_COUNT = 5;
+
+  /**
+   * Declare the named output reducers write subproblem edge counts to.
+   *
+   * @param job Job whose reducers solve subproblems.
+   */
+  public static void addNamedOutput(Job job) {
+    MultipleOutputs.addNamedOutput(job, NAMED_OUTPUT, SequenceFileOutputFormat.class, IntWritable.class,
+        LongWritable.class);
+  }
+
+  /**
+   * Write the edge count of a subproblem.
+   *
+   * @param multipleOutputs Outputs of the reducer.
+   * @param id              Subproblem id, see Subproblems.id.
+   * @param edgeCount       Edges the reducer received.
+   */
+  public static void write(MultipleOutputs<?, ?> multipleOutputs, int id, long edgeCount)
+      throws IOException, InterruptedException {
+    multipleOutputs.write(NAMED_OUTPUT, new IntWritable(id), new LongWritable(edgeCount), BASE_OUTPUT_PATH);
+  }
+
+  /**
+   * Print the min, mean and max edge counts, the max / mean imbalance, the
+   * coefficient of variation and the largest subproblems.
+   *
+   * @param out         Where to print.
+   * @param outputPath  Output directory of the job that wrote the counts.
+   * @param conf        Configuration.
+   * @param partitioner The job's vertex partitioner.
+   */
+  public static void print(PrintStream out, Path outputPath, Configuration conf, VertexPartitioner partitioner)
+      throws IOException {
+    Path files = new Path(outputPath, BASE_OUTPUT_PATH + "-*");
+    FileStatus[] statuses = files.getFileSystem(conf).globStatus(files);
+    long p = partitioner.getPartitionCount();
+
+    // Subproblems without edges never reach a reducer, but count as empty
+    long n = Subproblems.subproblemCount(p);
+    long received = 0;
+    long total = 0;
+    long min = Long.MAX_VALUE;
+    long max = 0;
+    double sumOfSquares = 0;
+    Comparator<long[]> byEdgeCount = new Comparator<long[]>() {
+      public int compare(long[] a, long[] b) {
+        return Long.compare(a[1], b[1]);
+      }
+    };
+    PriorityQueue<long[]> largest = new PriorityQueue<long[]>(LARGEST_COUNT + 1, byEdgeCount);
+
+    IntWritable id = new IntWritable();
+    LongWritable edgeCount = new LongWritable();
+    for (FileStatus status : statuses == null ? new FileStatus[0] : statuses) {
+      try (SequenceFile.Reader reader = new SequenceFile.Reader(conf, SequenceFile.Reader.file(status.getPath()))) {
+        while (reader.next(id, edgeCount)) {
+          long count = edgeCount.get();
+          received++;
+          total += count;
+          min = Math.min(min, count);
+          max = Math.max(max, count);
+          sumOfSquares += (double) count * count;
+          largest.add(new long[] { id.get(), count });
+          if (largest.size() > LARGEST_COUNT) {
+            largest.poll();
+          }
+        }
+      }
+    }
+    if (received < n) {
+      min = 0;
+    }
+    double mean = (double) total / n;
+    double deviation = Math.sqrt(Math.max(0, sumOfSquares / n - mean * mean));
+
+    out.println("Subproblem skew, partitioning " + partitioner + ": " + n + " subproblems, " + total + " edges");
+    out.println(String.format("  Edges per subproblem: min %d, mean %.1f, max %d, max / mean %.2f, "
+        + "coefficient of variation %.2f", min, mean, max, mean > 0 ? max / mean : 0,
+        mean > 0 ? deviation / mean : 0));
+
+    List<long[]> descending = new ArrayList<long[]>(largest);
+    Collections.sort(descending, Collections.reverseOrder(byEdgeCount));
+    for (long[] subproblem : descending) {
+      out.println("  " + describe((int) subproblem[0], p) + ": " + subproblem[1] + " edges");
+    }
+  }
+
+  // The partitions of a subproblem id
+  private static String describe(int id, long p) {
+    long[] partitions = new long[3];
+    Subproblems.partitions(id, p, partitions);
+    if (partitions[2] == Subproblems.NO_PARTITION) {
+      return "pair subproblem (" + partitions[0] + ", " + partitions[1] + ")";
+    }
+    return "triple subproblem (" + partitions[0] + ", " + partitions[1] + ", " + partitions[2] + ")";
+  }
+}
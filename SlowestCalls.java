@@ -0,0 +1,74 @@
+import java.util.*;
+
+import org.apache.commons.logging.Log;
+import org.apache.hadoop.conf.Configuration;
+
+/**
+ * Keeps the descriptions of the slowest reduce calls of a task, to log them
+ * when the task ends.
+ */
+public class SlowestCalls {
+  public static final int DEFAULT_COUNT = 10;
+  public static final String COUNT_CONFIG_KEY = "slowestCallCount";
+
+  private final int capacity;
+  private final PriorityQueue<Call> calls = new PriorityQueue<Call>(); // fastest kept call first
+
+  private static class Call implements Comparable<Call> {
+    final long nanos;
+    final String description;
+
+    Call(long nanos, String description) {
+      this.nanos = nanos;
+      this.description = description;
+    }
+
+    @Override
+    public int compareTo(Call o) {
+      return Long.compare(nanos, o.nanos);
+    }
+  }
+
+  /**
+   * Create a new instance keeping slowestCallCount calls.
+   *
+   * @param conf Task configuration.
+   */
+  public SlowestCalls(Configuration conf) {
+    this.capacity = conf.getInt(COUNT_CONFIG_KEY, DEFAULT_COUNT);
+  }
+
+  /**
+   * Check whether a call is slow enough to be kept, before describing it.
+   *
+   * @param nanos Duration of the call.
+   * @return <tt>true</tt> if add() would keep the call.
+   */
+  public boolean isSlow(long nanos) {
+    return capacity > 0 && (calls.size() < capacity || nanos > calls.peek().nanos);
+  }
+
+  public void add(long nanos, String description) {
+    if (isSlow(nanos)) {
+      if (calls.size() == capacity) {
+        calls.poll();
+      }
+      calls.add(new Call(nanos, description));
+    }
+  }
+
+  /**
+   * Log the kept calls, slowest first.
+   *
+   * @param log   Task log.
+   * @param title What the calls are, e.g. "subproblems".
+   */
+  public void log(Log log, String title) {
+    List<Call> slowest = new ArrayList<Call>(calls);
+    Collections.sort(slowest, Collections.reverseOrder());
+    log.info("Slowest " + slowest.size() + " " + title + ":");
+    for (Call call : slowest) {
+      log.info("  " + (call.nanos / 1000000) + " ms: " + call.description);
+    }
+  }
+}
@@ -0,0 +1,282 @@
+import java.io.*;
+import java.util.*;
+
+import org.apache.hadoop.conf.Configuration;
+
+/**
+ * Counts the triangles of a subproblem too large for memory, from edges
+ * spilled to local disk.
+ *
+ * The vertices are colored by a hash into q colors and the edges split into one
+ * run file per pair of colors. Every triangle has one multiset of colors, and
+ * is counted in memory in the graph made of the runs its edges can come from:
+ *
+ * - {a, b, c}: runs ab, bc and ac, which only hold triangles of three colors
+ *
+ * - {a, a, b}: runs aa and ab, which also hold the {a, a, a} triangles
+ *
+ * - {a, a, a}: run aa, subtracted q - 2 times so that {a, a, a} triangles
+ * count once in total
+ *
+ * These graphs hold about 6 / q^2 of the edges, and are split again, up to
+ * MAX_DEPTH times, when they still do not fit. Triangle types stay those of
+ * the Triangle Type Partition, given by the job's VertexPartitioner.
+ */
+public class SpilledSubproblem implements Closeable {
+  public static final String MAX_EDGE_COUNT_CONFIG_KEY = "maxSubproblemEdges";
+
+  // Share of the task heap the in-memory graph may take by default
+  public static final double DEFAULT_HEAP_FRACTION = 0.5;
+
+  // Splitting keeps a run file open per pair of colors, q (q + 1) / 2 = 528
+  // at most, well under the usual limit of 1024 file descriptors
+  public static final int MAX_COLOR_COUNT = 32;
+  public static final int MAX_DEPTH = 4;
+
+  private static final int RUN_BUFFER_SIZE = 1 << 13;
+
+  private final CompactForward graph;
+  private final long maxEdgeCount;
+  private final File directory;
+  private final Run edges;
+
+  private long type1TriangleCount = 0;
+  private long type2Or3TriangleCount = 0;
+  private int passCount = 0;
+  private String name = "";
+
+  /**
+   * Edge count from which a subproblem is spilled: maxSubproblemEdges, or what
+   * fits in DEFAULT_HEAP_FRACTION of the heap.
+   *
+   * @param conf Task configuration.
+   * @return The edge count.
+   */
+  public static long maxEdgeCount(Configuration conf) {
+    long heapEdgeCount = (long) (Runtime.getRuntime().maxMemory() * DEFAULT_HEAP_FRACTION
+        / CompactForward.ESTIMATED_BYTES_PER_EDGE);
+    return conf.getLong(MAX_EDGE_COUNT_CONFIG_KEY, Math.min(heapEdgeCount, Integer.MAX_VALUE / 2));
+  }
+
+  /** Edges of a run file, written through out until closed. */
+  private static class Run {
+    final File file;
+    DataOutputStream out;
+    long edgeCount = 0;
+
+    Run(File file) throws IOException {
+      this.file = file;
+      this.out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file), RUN_BUFFER_SIZE));
+    }
+
+    void add(long u, long v) throws IOException {
+      out.writeLong(u);
+      out.writeLong(v);
+      edgeCount++;
+    }
+
+    void close() throws IOException {
+      if (out != null) {
+        out.close();
+        out = null;
+      }
+    }
+
+    DataInputStream open() throws IOException {
+      return new DataInputStream(new BufferedInputStream(new FileInputStream(file), 1 << 16));
+    }
+  }
+
+  /**
+   * Start spilling: the edges buffered in the graph are written to disk and
+   * the graph is cleared.
+   *
+   * @param graph        Graph holding the edges so far, used to count.
+   * @param maxEdgeCount Largest edge count to count in memory.
+   */
+  public SpilledSubproblem(CompactForward graph, long maxEdgeCount) throws IOException {
+    this.graph = graph;
+    this.maxEdgeCount = maxEdgeCount;
+    this.directory = File.createTempFile("subproblem", "");
+    if (!directory.delete() || !directory.mkdir()) {
+      throw new IOException("Cannot create spill directory " + directory);
+    }
+
+    this.edges = new Run(new File(directory, "edges"));
+    for (int e = 0; e < graph.getEdgeCount(); e++) {
+      edges.add(graph.getEdgeEnd(2 * e), graph.getEdgeEnd(2 * e + 1));
+    }
+    graph.clear();
+  }
+
+  public void add(long u, long v) throws IOException {
+    edges.add(u, v);
+  }
+
+  /**
+   * Count the triangles of all added edges, reusing the graph. Fails when a
+   * graph still exceeds maxEdgeCount after MAX_DEPTH splits rather than run
+   * out of memory building it.
+   *
+   * @param partitioner Assigns vertices to partitions, for triangle types.
+   * @param name        Name of the subproblem, for error messages.
+   */
+  public void countTriangles(VertexPartitioner partitioner, String name) throws IOException {
+    edges.close();
+    this.name = name;
+    count(Collections.singletonList(edges), partitioner, 0, 1);
+  }
+
+  public long getEdgeCount() {
+    return edges.edgeCount;
+  }
+
+  public long getType1TriangleCount() {
+    return type1TriangleCount;
+  }
+
+  public long getType2Or3TriangleCount() {
+    return type2Or3TriangleCount;
+  }
+
+  /** Graphs counted in memory. */
+  public int getPassCount() {
+    return passCount;
+  }
+
+  // Adds weight times the triangle counts of the graph made of runs
+  private void count(List<Run> runs, VertexPartitioner partitioner, int depth, long weight) throws IOException {
+    long edgeCount = 0;
+    for (Run run : runs) {
+      edgeCount += run.edgeCount;
+    }
+    if (edgeCount < 3) {
+      return;
+    }
+
+    if (edgeCount > maxEdgeCount && depth == MAX_DEPTH) {
+      throw new IOException(name + " still has a graph of " + edgeCount + " edges, over the " + maxEdgeCount
+          + " that fit in memory, after " + MAX_DEPTH + " splits, likely around a high degree vertex: raise the "
+          + "partition count or " + MAX_EDGE_COUNT_CONFIG_KEY);
+    }
+    if (edgeCount <= maxEdgeCount) {
+      graph.clear();
+      for (Run run : runs) {
+        try (DataInputStream in = run.open()) {
+          for (long e = 0; e < run.edgeCount; e++) {
+            graph.addEdge(in.readLong(), in.readLong());
+          }
+        }
+      }
+      graph.build();
+      graph.countTriangles(partitioner);
+      type1TriangleCount += weight * graph.getType1TriangleCount();
+      type2Or3TriangleCount += weight * graph.getType2Or3TriangleCount();
+      graph.clear();
+      passCount++;
+      return;
+    }
+
+    int q = (int) Math.min(MAX_COLOR_COUNT, Math.max(2, Math.ceil(Math.sqrt(6.0 * edgeCount / maxEdgeCount))));
+    File levelDirectory = new File(directory, "level-" + depth + "-" + passCount);
+    if (!levelDirectory.mkdir()) {
+      throw new IOException("Cannot create spill directory " + levelDirectory);
+    }
+    Run[] pairs = split(runs, q, depth, levelDirectory);
+
+    try {
+      for (int a = 0; a < q; a++) {
+        Run aa = pairs[pairIndex(a, a, q)];
+
+        // {a, a, b} graphs without ab edges are the {a, a, a} graph, which
+        // is counted once for all of them
+        long aaaWeight = -(q - 2);
+        for (int b = 0; b < q; b++) {
+          if (b == a) {
+            continue;
+          }
+          Run ab = pairs[pairIndex(a, b, q)];
+          if (ab.edgeCount == 0) {
+            aaaWeight++;
+          } else if (aa.edgeCount > 0) {
+            count(Arrays.asList(aa, ab), partitioner, depth + 1, weight);
+          }
+        }
+        if (aaaWeight != 0) {
+          count(Collections.singletonList(aa), partitioner, depth + 1, aaaWeight * weight);
+        }
+
+        for (int b = a + 1; b < q; b++) {
+          Run ab = pairs[pairIndex(a, b, q)];
+          for (int c = b + 1; c < q && ab.edgeCount > 0; c++) {
+            Run bc = pairs[pairIndex(b, c, q)];
+            Run ac = pairs[pairIndex(a, c, q)];
+            if (bc.edgeCount > 0 && ac.edgeCount > 0) {
+              count(Arrays.asList(ab, bc, ac), partitioner, depth + 1, weight);
+            }
+          }
+        }
+      }
+    } finally {
+      delete(levelDirectory);
+    }
+  }
+
+  // Writes the edges of runs to one run per pair of colors
+  private static Run[] split(List<Run> runs, int q, int depth, File levelDirectory) throws IOException {
+    Run[] pairs = new Run[q * (q + 1) / 2];
+    try {
+      for (int a = 0; a < q; a++) {
+        for (int b = a; b < q; b++) {
+          pairs[pairIndex(a, b, q)] = new Run(new File(levelDirectory, a + "-" + b));
+        }
+      }
+
+      for (Run run : runs) {
+        try (DataInputStream in = run.open()) {
+          for (long e = 0; e < run.edgeCount; e++) {
+            long u = in.readLong();
+            long v = in.readLong();
+            pairs[pairIndex(color(u, depth, q), color(v, depth, q), q)].add(u, v);
+          }
+        }
+      }
+    } finally {
+      for (Run pair : pairs) {
+        if (pair != null) {
+          pair.close();
+        }
+      }
+    }
+    return pairs;
+  }
+
+  // Index of the unordered color pair (a, b) among q colors
+  private static int pairIndex(int a, int b, int q) {
+    int low = Math.min(a, b);
+    int high = Math.max(a, b);
+    return low * q - low * (low - 1) / 2 + (high - low);
+  }
+
+  // A hash of the vertex independent of its partition and of the other depths
+  private static int color(long vertex, int depth, int q) {
+    return (int) Long.remainderUnsigned(VertexPartitioner.mix(vertex + (depth + 1) * 0x5851F42D4C957F2DL), q);
+  }
+
+  private static void delete(File file) {
+    File[] children = file.listFiles();
+    if (children != null) {
+      for (File child : children) {
+        delete(child);
+      }
+    }
+    file.delete();
+  }
+
+  /** Delete the spilled edges. */
+  @Override
+  public void close() throws IOException {
+    edges.close();
+    delete(directory);
+  }
+}
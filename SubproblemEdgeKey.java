@@ -0,0 +1,126 @@
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+import org.apache.hadoop.io.WritableComparable;
+import org.apache.hadoop.io.WritableComparator;
+
+/**
+ * Key of an edge of a Triangle Type Partition subproblem: the subproblem id
+ * given by Subproblems.id, then the edge (first, second). Grouping on the id
+ * alone lets the shuffle deliver every subproblem's edges sorted.
+ */
+public class SubproblemEdgeKey implements WritableComparable<SubproblemEdgeKey> {
+  public int id = 0;
+  public long first = 0;
+  public long second = 0;
+
+  public SubproblemEdgeKey() {}
+
+  public SubproblemEdgeKey(int id, long first, long second) {
+    this.id = id;
+    this.first = first;
+    this.second = second;
+  }
+
+  public void set(int id, long first, long second) {
+    this.id = id;
+    this.first = first;
+    this.second = second;
+  }
+
+  /**
+   * Read the id and the two integers. The integers are encoded as in LongPair,
+   * so serialized keys compare as bytes.
+   */
+  @Override
+  public void readFields(DataInput in) throws IOException {
+    this.id = in.readInt();
+    this.first = in.readLong() + Long.MIN_VALUE;
+    this.second = in.readLong() + Long.MIN_VALUE;
+  }
+
+  @Override
+  public void write(DataOutput out) throws IOException {
+    out.writeInt(this.id);
+    out.writeLong(this.first - Long.MIN_VALUE);
+    out.writeLong(this.second - Long.MIN_VALUE);
+  }
+
+  @Override
+  public int hashCode() {
+    return (this.id * 157 + (int) this.first) * 157 + (int) this.second;
+  }
+
+  @Override
+  public boolean equals(Object right) {
+    if (right instanceof SubproblemEdgeKey) {
+      SubproblemEdgeKey r = (SubproblemEdgeKey) right;
+      return r.id == this.id && r.first == this.first && r.second == this.second;
+    } else {
+      return false;
+    }
+  }
+
+  @Override
+  public String toString() {
+    return String.valueOf(this.id);
+  }
+
+  /**
+   * A Comparator that compares serialized SubproblemEdgeKey. Ids are never
+   * negative, so the bytes order by id, then first, then second.
+   */
+  public static class Comparator extends WritableComparator {
+    public Comparator() {
+      super(SubproblemEdgeKey.class);
+    }
+
+    public int compare(byte[] b1, int s1, int l1, byte[] b2, int s2, int l2) {
+      return compareBytes(b1, s1, l1, b2, s2, l2);
+    }
+  }
+
+  static { // register this comparator
+    WritableComparator.define(SubproblemEdgeKey.class, new Comparator());
+  }
+
+  /** A grouping Comparator that compares only the subproblem ids. */
+  public static class IdComparator extends WritableComparator {
+    public IdComparator() {
+      super(SubproblemEdgeKey.class);
+    }
+
+    public int compare(byte[] b1, int s1, int l1, byte[] b2, int s2, int l2) {
+      return Integer.compare(readInt(b1, s1), readInt(b2, s2));
+    }
+
+    // WritableComparator declares this method with raw types, so overriding
+    // it with WritableComparable<?> does not compile
+    @Override
+    @SuppressWarnings("rawtypes")
+    public int compare(WritableComparable a, WritableComparable b) {
+      return Integer.compare(((SubproblemEdgeKey) a).id, ((SubproblemEdgeKey) b).id);
+    }
+  }
+
+  /** Spreads subproblem ids round robin, as SubproblemKey.Partitioner does. */
+  public static class Partitioner<V> extends org.apache.hadoop.mapreduce.Partitioner<SubproblemEdgeKey, V> {
+    public int getPartition(SubproblemEdgeKey key, V value, int numPartitions) {
+      return key.id % numPartitions;
+    }
+  }
+
+  @Override
+  public int compareTo(SubproblemEdgeKey o) {
+    if (this.id != o.id) {
+      return this.id < o.id ? -1 : 1;
+    } else if (this.first != o.first) {
+      return this.first < o.first ? -1 : 1;
+    } else if (this.second != o.second) {
+      return this.second < o.second ? -1 : 1;
+    } else {
+      return 0;
+    }
+  }
+}
@@ -0,0 +1,96 @@
+import java.io.IOException;
+
+import org.apache.hadoop.io.NullWritable;
+import org.apache.hadoop.mapreduce.TaskInputOutputContext;
+
+/**
+ * Writes an edge to every Triangle Type Partition subproblem it belongs to,
+ * keyed by SubproblemKey. The key, the value and the subproblem buffer are
+ * reused for every edge, so a mapper emits without allocating. Edges an
+ * EdgeSampler drops are not emitted.
+ */
+public class SubproblemEmitter {
+  private final long p;
+  private final VertexPartitioner partitioner;
+  private final EdgeSampler sampler;
+  private final long[] subproblems;
+  private final SubproblemKey subproblemKey = new SubproblemKey();
+  private final LongPair edge = new LongPair();
+  private final SubproblemEdgeKey subproblemEdgeKey = new SubproblemEdgeKey();
+
+  /**
+   * Create a new emitter, partitioning vertices by vertex % p.
+   *
+   * @param p Partition count.
+   */
+  public SubproblemEmitter(long p) {
+    this(new VertexPartitioner(p));
+  }
+
+  /**
+   * Create a new emitter.
+   *
+   * @param partitioner Assigns vertices to partitions.
+   */
+  public SubproblemEmitter(VertexPartitioner partitioner) {
+    this(partitioner, new EdgeSampler(1, EdgeSampler.DEFAULT_SEED));
+  }
+
+  /**
+   * Create a new emitter of a sample of the edges.
+   *
+   * @param partitioner Assigns vertices to partitions.
+   * @param sampler     Picks the edges to emit.
+   */
+  public SubproblemEmitter(VertexPartitioner partitioner, EdgeSampler sampler) {
+    this.p = partitioner.getPartitionCount();
+    this.partitioner = partitioner;
+    this.sampler = sampler;
+    this.subproblems = new long[3 * Subproblems.maxSubproblemCount(p)];
+  }
+
+  /**
+   * Emit an edge to all of its subproblems.
+   *
+   * @param vertex1 One end of the edge.
+   * @param vertex2 The other end of the edge.
+   * @param context Context to write to.
+   */
+  public void emit(long vertex1, long vertex2, TaskInputOutputContext<?, ?, SubproblemKey, LongPair> context)
+      throws IOException, InterruptedException {
+    if (!sampler.keep(vertex1, vertex2)) {
+      return;
+    }
+    int subproblemCount = Subproblems.enumerate(partitioner.partition(vertex1), partitioner.partition(vertex2), p,
+        subproblems);
+    edge.set(vertex1, vertex2);
+
+    for (int i = 0; i < subproblemCount; i++) {
+      subproblemKey.set(Subproblems.id(subproblems[3 * i], subproblems[3 * i + 1], subproblems[3 * i + 2], p));
+      context.write(subproblemKey, edge);
+    }
+  }
+
+  /**
+   * Emit an edge to all of its subproblems as a SubproblemEdgeKey holding the
+   * edge with its lower end first, for reducers that read sorted edges.
+   *
+   * @param vertex1 One end of the edge.
+   * @param vertex2 The other end of the edge.
+   * @param context Context to write to.
+   */
+  public void emitEdgeKeys(long vertex1, long vertex2,
+      TaskInputOutputContext<?, ?, SubproblemEdgeKey, NullWritable> context) throws IOException, InterruptedException {
+    if (!sampler.keep(vertex1, vertex2)) {
+      return;
+    }
+    int subproblemCount = Subproblems.enumerate(partitioner.partition(vertex1), partitioner.partition(vertex2), p,
+        subproblems);
+
+    for (int i = 0; i < subproblemCount; i++) {
+      subproblemEdgeKey.set(Subproblems.id(subproblems[3 * i], subproblems[3 * i + 1], subproblems[3 * i + 2], p),
+          Math.min(vertex1, vertex2), Math.max(vertex1, vertex2));
+      context.write(subproblemEdgeKey, NullWritable.get());
+    }
+  }
+}
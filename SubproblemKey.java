@@ -0,0 +1,87 @@
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+import org.apache.hadoop.io.WritableComparable;
+import org.apache.hadoop.io.WritableComparator;
+
+/**
+ * Fixed-width key of a Triangle Type Partition subproblem, holding the id given
+ * by Subproblems.id.
+ */
+public class SubproblemKey implements WritableComparable<SubproblemKey> {
+  public int id = 0;
+
+  public SubproblemKey() {}
+
+  public SubproblemKey(int id) {
+    this.id = id;
+  }
+
+  public void set(int id) {
+    this.id = id;
+  }
+
+  public int get() {
+    return this.id;
+  }
+
+  @Override
+  public void readFields(DataInput in) throws IOException {
+    this.id = in.readInt();
+  }
+
+  @Override
+  public void write(DataOutput out) throws IOException {
+    out.writeInt(this.id);
+  }
+
+  @Override
+  public int hashCode() {
+    return this.id;
+  }
+
+  @Override
+  public boolean equals(Object right) {
+    if (right instanceof SubproblemKey) {
+      return ((SubproblemKey) right).id == this.id;
+    } else {
+      return false;
+    }
+  }
+
+  @Override
+  public String toString() {
+    return String.valueOf(this.id);
+  }
+
+  /** A Comparator that compares serialized SubproblemKey. */
+  public static class Comparator extends WritableComparator {
+    public Comparator() {
+      super(SubproblemKey.class);
+    }
+
+    public int compare(byte[] b1, int s1, int l1, byte[] b2, int s2, int l2) {
+      return Integer.compare(readInt(b1, s1), readInt(b2, s2));
+    }
+  }
+
+  /**
+   * Spreads subproblem ids round robin over the reducers, so every reducer gets
+   * an even share of both the pair and the (larger) triple subproblems.
+   */
+  public static class Partitioner<V> extends org.apache.hadoop.mapreduce.Partitioner<SubproblemKey, V> {
+    public int getPartition(SubproblemKey key, V value, int numPartitions) {
+      return key.get() % numPartitions;
+    }
+  }
+
+  static { // register this comparator
+    WritableComparator.define(SubproblemKey.class, new Comparator());
+  }
+
+  @Override
+  public int compareTo(SubproblemKey o) {
+    return Integer.compare(this.id, o.id);
+  }
+}
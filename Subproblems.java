@@ -0,0 +1,136 @@
+/**
+ * Enumerates the Triangle Type Partition subproblems an edge belongs to.
+ *
+ * A pair subproblem (a, b) receives every edge with both ends in partitions a
+ * and b. A triple subproblem (a, b, c) receives every edge whose ends lie in two
+ * different partitions among a, b and c. The subproblems are computed directly
+ * from the partitions of the two ends, so the cost is proportional to the number
+ * of subproblems emitted rather than to the O(p^3) candidates.
+ */
+public class Subproblems {
+  public static final long NO_PARTITION = -1;
+
+  /**
+   * Maximum number of subproblems a single edge can belong to.
+   *
+   * @param p Partition count.
+   * @return The maximum subproblem count.
+   */
+  public static int maxSubproblemCount(long p) {
+    return (int) Math.max(p - 1, 1);
+  }
+
+  /**
+   * Write the subproblems an edge belongs to into out, three partitions per
+   * subproblem (the third is NO_PARTITION for pair subproblems), in ascending
+   * lexicographic order with pair subproblems first.
+   *
+   * @param partition1 Partition of one end of the edge.
+   * @param partition2 Partition of the other end of the edge.
+   * @param p          Partition count.
+   * @param out        Output buffer of at least 3 * maxSubproblemCount(p)
+   *                   entries.
+   * @return The number of subproblems written.
+   */
+  public static int enumerate(long partition1, long partition2, long p, long[] out) {
+    int count = 0;
+
+    if (partition1 == partition2) {
+      // Every pair subproblem containing the partition
+      for (long a = 0; a < partition1; a++) {
+        count = put(out, count, a, partition1, NO_PARTITION);
+      }
+      for (long b = partition1 + 1; b < p; b++) {
+        count = put(out, count, partition1, b, NO_PARTITION);
+      }
+      return count;
+    }
+
+    long low = Math.min(partition1, partition2);
+    long high = Math.max(partition1, partition2);
+
+    // The single pair subproblem, then every triple containing both partitions
+    count = put(out, count, low, high, NO_PARTITION);
+    for (long c = 0; c < low; c++) {
+      count = put(out, count, c, low, high);
+    }
+    for (long c = low + 1; c < high; c++) {
+      count = put(out, count, low, c, high);
+    }
+    for (long c = high + 1; c < p; c++) {
+      count = put(out, count, low, high, c);
+    }
+    return count;
+  }
+
+  /**
+   * Number of distinct subproblems, C(p, 2) pairs followed by C(p, 3) triples.
+   *
+   * @param p Partition count.
+   * @return The subproblem count.
+   */
+  public static long subproblemCount(long p) {
+    return p * (p - 1) / 2 + p * (p - 1) * (p - 2) / 6;
+  }
+
+  /**
+   * Compact numeric id of a subproblem, using the combinatorial number system:
+   * pair subproblems take ids [0, C(p, 2)) and triple subproblems the
+   * following C(p, 3) ids. Ids fit in an int for p up to about 2300.
+   *
+   * @param a Lowest partition.
+   * @param b Middle (or highest, for pair subproblems) partition.
+   * @param c Highest partition, or NO_PARTITION for pair subproblems.
+   * @param p Partition count.
+   * @return The subproblem id.
+   */
+  public static int id(long a, long b, long c, long p) {
+    if (c == NO_PARTITION) {
+      return (int) (b * (b - 1) / 2 + a);
+    }
+    return (int) (p * (p - 1) / 2 + c * (c - 1) * (c - 2) / 6 + b * (b - 1) / 2 + a);
+  }
+
+  /**
+   * Whether an id given by id() is that of a pair subproblem.
+   *
+   * @param id Subproblem id.
+   * @param p  Partition count.
+   * @return <tt>true</tt> for pair subproblems.
+   */
+  public static boolean isPair(int id, long p) {
+    return id < p * (p - 1) / 2;
+  }
+
+  /**
+   * The partitions of a subproblem, inverting id().
+   *
+   * @param id  Subproblem id.
+   * @param p   Partition count.
+   * @param out Output buffer of at least 3 entries, set as by enumerate().
+   */
+  public static void partitions(int id, long p, long[] out) {
+    long rest = id;
+    long c = NO_PARTITION;
+    if (!isPair(id, p)) {
+      rest -= p * (p - 1) / 2;
+      c = 2;
+      while ((c + 1) * c * (c - 1) / 6 <= rest) {
+        c++;
+      }
+      rest -= c * (c - 1) * (c - 2) / 6;
+    }
+    long b = 1;
+    while ((b + 1) * b / 2 <= rest) {
+      b++;
+    }
+    put(out, 0, rest - b * (b - 1) / 2, b, c);
+  }
+
+  private static int put(long[] out, int count, long a, long b, long c) {
+    out[3 * count] = a;
+    out[3 * count + 1] = b;
+    out[3 * count + 2] = c;
+    return count + 1;
+  }
+}
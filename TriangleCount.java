@@ -2,6 +2,10 @@ import java.lang.*;
 import java.io.*;
 import java.util.*;
 
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.hadoop.fs.FileStatus;
+import org.apache.hadoop.fs.FileSystem;
 import org.apache.hadoop.fs.Path;
 import org.apache.hadoop.conf.*;
 import org.apache.hadoop.io.*;
@@ -17,137 +21,450 @@ import org.apache.hadoop.util.*;
  * will be removed. By Ray Andrew (13515073) and Jonathan Christopher
  * (13515001).
  *
- * - MapperOne: (a, b) -> a < b ? emit (a < b) : emit (b > a) - ReducerOne: emit
- * single edges and edge pairs - remove duplicates of b - emit single edges ((x,
- * y), SINGLE_EDGE) - emit all edge pairs of a,x and a,y ((x, y), a) where x > a
- * and y > a
+ * - MapperDegree: (a, b) -> emit (a, b) and (b, a) - ReducerDegree: remove
+ * duplicates of b, emit (b, (a, degree(a))) for every neighbor b of a
+ *
+ * - MapperOne: no-op, except that the records of hub vertices (see below) are
+ * spread over block pairs - ReducerOne: orient each edge from the lower to the higher
+ * (degree, id) vertex and emit single edges and edge pairs - emit single edges
+ * ((x, y), SINGLE_EDGE) once per edge - emit all edge pairs of a,x and a,y ((x,
+ * y), a) where x and y are both higher than a
  *
  * - MapperTwo: no-op - ReducerTwo: count triangles which contain each edge pair
- * - match on single edges and edge pairs - if edge pairs are connected to a
- * single edge, count the number of edge pairs and emit it
+ * - keys are grouped on (x, y) and sorted so that the single edge comes first -
+ * if the group starts with a single edge, count the number of edge pairs and
+ * emit it, otherwise skip the group
  *
  * - MapperThree: no-op - ReducerThree: sum all triangle counts
+ *
+ * With hubDegreeThreshold > 0, ReducerDegree also lists the vertices whose
+ * degree exceeds the threshold. MapperOne splits the neighbors of each such hub
+ * into hubBlockCount blocks and sends every neighbor to each block pair
+ * containing its block, so the wedges of a hub are generated by up to
+ * hubBlockCount * (hubBlockCount + 1) / 2 reducers instead of one.
+ *
+ * With counterAggregation=true, job three is skipped and the driver sums the
+ * triangle counts from job two's counters instead.
  */
 public class TriangleCount extends Configured implements Tool {
 
-  public static final LongWritable SINGLE_EDGE = new LongWritable(-1);
+  // Third field of job one's output keys, single edges sort before the wedges
+  // closing on them
+  public static final long SINGLE_EDGE = -1;
+  public static final long WEDGE = 0;
   public static final Text RESULT_KEY = new Text("triangleCount");
 
-  public static class MapperOne extends Mapper<LongWritable, Text, LongWritable, LongWritable> {
+  public static final int ESTIMATED_DEGREE = 1024;
+
+  // Vertices with a degree above the threshold have their wedges generated by
+  // several reducers, 0 disables hub splitting
+  public static final long DEFAULT_HUB_DEGREE_THRESHOLD = 0;
+  public static final String HUB_DEGREE_THRESHOLD_CONFIG_KEY = "hubDegreeThreshold";
+  public static final int DEFAULT_HUB_BLOCK_COUNT = 8;
+  public static final String HUB_BLOCK_COUNT_CONFIG_KEY = "hubBlockCount";
+  public static final String HUB_PATH_CONFIG_KEY = "hubPath";
+  public static final String HUBS_NAMED_OUTPUT = "hubs";
+
+  // Block code of non-hub vertices in job one's keys
+  public static final long NO_BLOCK = -1;
+
+  public static final boolean DEFAULT_COUNTER_AGGREGATION = false;
+  public static final String COUNTER_AGGREGATION_CONFIG_KEY = "counterAggregation";
+
+  // Directory for the intermediate results of the jobs
+  public static final String DEFAULT_TEMP_PATH = "/user/rayandrew/temp";
+  public static final String TEMP_PATH_CONFIG_KEY = "tempPath";
+
+  public static enum TriangleCounter {
+    TRIANGLES
+  }
+
+  // Work done by job one's reducers, per (vertex, block) key
+  public static enum WedgeCounter {
+    VERTICES, NEIGHBORS, HIGHER_NEIGHBORS, WEDGES_EMITTED, EMIT_MILLIS
+  }
+
+  // Work done by job two's reducers, per edge group
+  public static enum EdgeGroupCounter {
+    EDGE_GROUPS, GROUPS_WITHOUT_EDGE, WEDGES_CHECKED
+  }
+
+  private static final Log LOG = LogFactory.getLog(TriangleCount.class);
+
+  final List<ExecutedJob> executedJobs = new ArrayList<ExecutedJob>();
+
+  public static class MapperDegree extends Mapper<LongWritable, Text, LongWritable, LongWritable> {
+    final EdgeParser parser = new EdgeParser();
+    final LongWritable left = new LongWritable();
+    final LongWritable right = new LongWritable();
+
     public void map(LongWritable key, Text value, Context context) throws IOException, InterruptedException {
-      String[] str = value.toString().split("\\s+");
-      if (str.length > 1) {
-        long node1 = Long.parseLong(str[0]);
-        long node2 = Long.parseLong(str[1]);
-
-        // Ensure the left node index is less than the right node index
-        if (node1 < node2) {
-          context.write(new LongWritable(node1), new LongWritable(node2));
-        } else {
-          context.write(new LongWritable(node2), new LongWritable(node1));
-        }
+      // Self loops cannot be part of a triangle
+      if (parser.parse(value) && parser.first != parser.second) {
+        left.set(parser.first);
+        right.set(parser.second);
+        context.write(left, right);
+        context.write(right, left);
       }
     }
   }
 
-  public static class ReducerOne extends Reducer<LongWritable, LongWritable, Text, Text> {
-    Set<LongWritable> valuesSet = new HashSet(4000000);
-    List<LongWritable> uniqueValues = new ArrayList(4000000);
+  public static class ReducerDegree extends Reducer<LongWritable, LongWritable, LongWritable, LongPair> {
+    long[] neighbors = new long[ESTIMATED_DEGREE];
+    final LongWritable neighbor = new LongWritable();
+    final LongPair vertexDegree = new LongPair();
+    long hubDegreeThreshold;
+    MultipleOutputs<LongWritable, LongPair> multipleOutputs;
+
+    public void setup(Context context) {
+      hubDegreeThreshold = context.getConfiguration().getLong(HUB_DEGREE_THRESHOLD_CONFIG_KEY,
+          DEFAULT_HUB_DEGREE_THRESHOLD);
+      multipleOutputs = new MultipleOutputs<LongWritable, LongPair>(context);
+    }
+
+    public void cleanup(Context context) throws IOException, InterruptedException {
+      multipleOutputs.close();
+    }
 
     public void reduce(LongWritable key, Iterable<LongWritable> values, Context context)
         throws IOException, InterruptedException {
 
-      // Insert values to a set to remove duplicates
-      Iterator<LongWritable> valuesIterator = values.iterator();
-      while (valuesIterator.hasNext()) {
-        LongWritable node = valuesIterator.next();
-	if (!valuesSet.contains(node)) {
-            valuesSet.add(new LongWritable(node.get()));
-	    uniqueValues.add(new LongWritable(node.get()));
-
-	    // Emit single values
-	    context.write(new Text(key.toString() + "," + node.toString()), new Text(SINGLE_EDGE.toString()));
-	}
-      }
-
-      valuesSet.clear();
-
-      // Emit all edge pairs which are connected on the key node
-      for (int i = 0; i < uniqueValues.size(); i++) {
-        for (int j = i + 1; j < uniqueValues.size(); j++) {
-          if (uniqueValues.get(i).get() < uniqueValues.get(j).get()) {
-            context.write(new Text(uniqueValues.get(i).toString() + "," + uniqueValues.get(j).toString()),
-                new Text(key.toString()));
-          } else {
-            context.write(new Text(uniqueValues.get(j).toString() + "," + uniqueValues.get(i).toString()),
-                new Text(key.toString()));
+      // Sort neighbors to remove duplicates
+      int count = 0;
+      for (LongWritable node : values) {
+        if (count == neighbors.length) {
+          neighbors = Arrays.copyOf(neighbors, 2 * neighbors.length);
+        }
+        neighbors[count++] = node.get();
+      }
+      Arrays.sort(neighbors, 0, count);
+
+      int degree = 0;
+      for (int i = 0; i < count; i++) {
+        if (degree == 0 || neighbors[degree - 1] != neighbors[i]) {
+          neighbors[degree++] = neighbors[i];
+        }
+      }
+
+      // Tell every neighbor about this vertex and its degree
+      vertexDegree.set(key.get(), degree);
+      if (hubDegreeThreshold > 0 && degree > hubDegreeThreshold) {
+        multipleOutputs.write(HUBS_NAMED_OUTPUT, key, vertexDegree);
+      }
+      for (int i = 0; i < degree; i++) {
+        neighbor.set(neighbors[i]);
+        context.write(neighbor, vertexDegree);
+      }
+    }
+  }
+
+  // Block of a hub's neighbor, spread by a multiplicative hash
+  public static int hubBlock(long neighbor, int hubBlockCount) {
+    return (int) Long.remainderUnsigned(neighbor * 0x9E3779B97F4A7C15L, hubBlockCount);
+  }
+
+  // Reads the hubs listed by job degree, mapped to their degree
+  public static Map<Long, Long> readHubDegrees(Configuration conf) throws IOException {
+    Map<Long, Long> hubDegrees = new HashMap<Long, Long>();
+    String hubPath = conf.get(HUB_PATH_CONFIG_KEY);
+    if (hubPath == null) {
+      return hubDegrees;
+    }
+
+    Path hubFiles = new Path(hubPath, HUBS_NAMED_OUTPUT + "-*");
+    FileStatus[] statuses = hubFiles.getFileSystem(conf).globStatus(hubFiles);
+    LongWritable hub = new LongWritable();
+    LongPair hubDegree = new LongPair();
+    for (FileStatus status : statuses == null ? new FileStatus[0] : statuses) {
+      try (SequenceFile.Reader reader = new SequenceFile.Reader(conf, SequenceFile.Reader.file(status.getPath()))) {
+        while (reader.next(hub, hubDegree)) {
+          hubDegrees.put(hubDegree.first, hubDegree.second);
+        }
+      }
+    }
+    return hubDegrees;
+  }
+
+  public static class MapperOne extends Mapper<LongWritable, LongPair, LongPair, LongPair> {
+    Map<Long, Long> hubDegrees;
+    int hubBlockCount;
+    final LongPair vertexBlocks = new LongPair();
+
+    public void setup(Context context) throws IOException {
+      hubDegrees = readHubDegrees(context.getConfiguration());
+      hubBlockCount = context.getConfiguration().getInt(HUB_BLOCK_COUNT_CONFIG_KEY, DEFAULT_HUB_BLOCK_COUNT);
+    }
+
+    public void map(LongWritable key, LongPair value, Context context) throws IOException, InterruptedException {
+      if (hubDegrees.isEmpty() || !hubDegrees.containsKey(key.get())) {
+        vertexBlocks.set(key.get(), NO_BLOCK);
+        context.write(vertexBlocks, value);
+        return;
+      }
+
+      // Send the neighbor to every block pair (i, j), i <= j, containing its block
+      int block = hubBlock(value.first, hubBlockCount);
+      for (int other = 0; other < hubBlockCount; other++) {
+        vertexBlocks.set(key.get(), Math.min(block, other) * hubBlockCount + Math.max(block, other));
+        context.write(vertexBlocks, value);
+      }
+    }
+  }
+
+  public static class ReducerOne extends Reducer<LongPair, LongPair, LongTriple, NullWritable> {
+    final LongTriple edge = new LongTriple();
+    long[] neighbors = new long[ESTIMATED_DEGREE];
+    long[] neighborDegrees = new long[ESTIMATED_DEGREE];
+    long[] otherNeighbors = new long[ESTIMATED_DEGREE];
+    Map<Long, Long> hubDegrees;
+    int hubBlockCount;
+    SlowestCalls slowestVertices;
+    long emitNanos = 0;
+
+    public void setup(Context context) throws IOException {
+      hubDegrees = readHubDegrees(context.getConfiguration());
+      hubBlockCount = context.getConfiguration().getInt(HUB_BLOCK_COUNT_CONFIG_KEY, DEFAULT_HUB_BLOCK_COUNT);
+      slowestVertices = new SlowestCalls(context.getConfiguration());
+    }
+
+    public void cleanup(Context context) {
+      context.getCounter(WedgeCounter.EMIT_MILLIS).increment(emitNanos / 1000000);
+      slowestVertices.log(LOG, "vertices");
+    }
+
+    public void reduce(LongPair key, Iterable<LongPair> values, Context context)
+        throws IOException, InterruptedException {
+      long startTime = System.nanoTime();
+
+      // Neighbors are already unique, so their count is the degree of the key
+      // unless the key is a hub whose neighbors are split into blocks
+      int count = 0;
+      for (LongPair neighborDegree : values) {
+        if (count == neighbors.length) {
+          neighbors = Arrays.copyOf(neighbors, 2 * neighbors.length);
+          neighborDegrees = Arrays.copyOf(neighborDegrees, 2 * neighborDegrees.length);
+        }
+        neighbors[count] = neighborDegree.first;
+        neighborDegrees[count] = neighborDegree.second;
+        count++;
+      }
+      long node = key.first;
+      long degree = key.second == NO_BLOCK ? count : hubDegrees.get(node);
+
+      // Only the (i, i) block pair of a hub emits the edges of block i
+      int block = -1;
+      int otherBlock = -1;
+      if (key.second != NO_BLOCK) {
+        block = (int) (key.second / hubBlockCount);
+        otherBlock = (int) (key.second % hubBlockCount);
+      }
+
+      // Keep the neighbors ranked higher by (degree, id) and emit their edges,
+      // each edge is emitted only by its lower ranked end
+      int higherCount = 0;
+      int otherCount = 0;
+      for (int i = 0; i < count; i++) {
+        if (neighborDegrees[i] > degree || (neighborDegrees[i] == degree && neighbors[i] > node)) {
+          long higher = neighbors[i];
+          if (block != otherBlock && hubBlock(higher, hubBlockCount) == otherBlock) {
+            if (otherCount == otherNeighbors.length) {
+              otherNeighbors = Arrays.copyOf(otherNeighbors, 2 * otherNeighbors.length);
+            }
+            otherNeighbors[otherCount++] = higher;
+            continue;
+          }
+          neighbors[higherCount++] = higher;
+
+          // Emit single values
+          if (block == otherBlock) {
+            if (node < higher) {
+              edge.set(node, higher, SINGLE_EDGE);
+            } else {
+              edge.set(higher, node, SINGLE_EDGE);
+            }
+            context.write(edge, NullWritable.get());
+          }
+        }
+      }
+
+      long wedgeCount;
+      if (block == otherBlock) {
+        wedgeCount = (long) higherCount * (higherCount - 1) / 2;
+        // Emit all edge pairs which are connected on the key node
+        Arrays.sort(neighbors, 0, higherCount);
+        for (int i = 0; i < higherCount; i++) {
+          for (int j = i + 1; j < higherCount; j++) {
+            edge.set(neighbors[i], neighbors[j], WEDGE);
+            context.write(edge, NullWritable.get());
+          }
+        }
+      } else {
+        wedgeCount = (long) higherCount * otherCount;
+        // Emit the edge pairs across the two blocks of a hub
+        for (int i = 0; i < higherCount; i++) {
+          for (int j = 0; j < otherCount; j++) {
+            edge.set(Math.min(neighbors[i], otherNeighbors[j]), Math.max(neighbors[i], otherNeighbors[j]), WEDGE);
+            context.write(edge, NullWritable.get());
           }
         }
       }
 
-      uniqueValues.clear();
+      context.getCounter(WedgeCounter.VERTICES).increment(1);
+      context.getCounter(WedgeCounter.NEIGHBORS).increment(count);
+      context.getCounter(WedgeCounter.HIGHER_NEIGHBORS).increment(higherCount + otherCount);
+      context.getCounter(WedgeCounter.WEDGES_EMITTED).increment(wedgeCount);
+
+      long elapsedNanos = System.nanoTime() - startTime;
+      emitNanos += elapsedNanos;
+      if (slowestVertices.isSlow(elapsedNanos) || LOG.isDebugEnabled()) {
+        String description = "vertex " + node + (key.second == NO_BLOCK ? "" : " block pair " + key.second)
+            + ": degree " + degree + ", " + count + " neighbors received, "
+            + (higherCount + otherCount) + " higher, " + wedgeCount + " wedges emitted";
+        slowestVertices.add(elapsedNanos, description);
+        LOG.debug(description);
+      }
     }
   }
 
   public static class MapperTextLongWritable extends Mapper<LongWritable, Text, Text, LongWritable> {
+    final EdgeParser parser = new EdgeParser();
+    final Text textKey = new Text();
+    final LongWritable longValue = new LongWritable();
+
     public void map(LongWritable key, Text value, Context context) throws IOException, InterruptedException {
-      String[] str = value.toString().split("\\s+");
-      if (str.length > 1) {
-        context.write(new Text(str[0]), new LongWritable(Long.parseLong(str[1])));
+      if (parser.parseKeyValue(value, textKey)) {
+        longValue.set(parser.second);
+        context.write(textKey, longValue);
       }
     }
   }
 
-  public static class ReducerTwo extends Reducer<Text, LongWritable, Text, LongWritable> {
-    public void reduce(Text key, Iterable<LongWritable> values, Context context)
-        throws IOException, InterruptedException {
-      long triangleCount = 0;
-      boolean hasSingleEdge = false;
+  public static class ReducerTwo extends Reducer<LongTriple, NullWritable, Text, LongWritable> {
+    final LongWritable count = new LongWritable();
 
-      for (LongWritable node : values) {
-        if (node.get() == SINGLE_EDGE.get()) {
-          hasSingleEdge = true;
-        } else {
-          triangleCount += 1;
-        }
+    public void reduce(LongTriple key, Iterable<NullWritable> values, Context context)
+        throws IOException, InterruptedException {
+      // The first key of the group is the smallest one, so it is the single
+      // edge if there is one
+      boolean edge = key.third == SINGLE_EDGE;
+      long recordCount = 0;
+      for (NullWritable value : values) {
+        recordCount++;
+      }
+      long wedgeCount = edge ? recordCount - 1 : recordCount;
+
+      // Wedges of groups without an edge are read and dropped, they still
+      // count as checked
+      context.getCounter(EdgeGroupCounter.EDGE_GROUPS).increment(1);
+      context.getCounter(EdgeGroupCounter.WEDGES_CHECKED).increment(wedgeCount);
+      if (!edge) {
+        context.getCounter(EdgeGroupCounter.GROUPS_WITHOUT_EDGE).increment(1);
+        return;
       }
 
-      if (hasSingleEdge) {
-        context.write(RESULT_KEY, new LongWritable(triangleCount));
+      context.getCounter(TriangleCounter.TRIANGLES).increment(wedgeCount);
+      count.set(wedgeCount);
+      context.write(RESULT_KEY, count);
+    }
+  }
+
+  // Pre-sums job three's map output, which is all keyed by RESULT_KEY
+  public static class SumCombiner extends Reducer<Text, LongWritable, Text, LongWritable> {
+    final LongWritable total = new LongWritable();
+
+    public void reduce(Text key, Iterable<LongWritable> values, Context context)
+        throws IOException, InterruptedException {
+      long sum = 0;
+      for (LongWritable triangleCount : values) {
+        sum += triangleCount.get();
       }
+      total.set(sum);
+      context.write(key, total);
     }
   }
 
   public static class ReducerThree extends Reducer<Text, LongWritable, LongWritable, NullWritable> {
+    final LongWritable total = new LongWritable();
+
     public void reduce(Text key, Iterable<LongWritable> values, Context context)
         throws IOException, InterruptedException {
       long sum = 0;
       for (LongWritable triangleCount : values) {
         sum += triangleCount.get();
       }
-      context.write(new LongWritable(sum), NullWritable.get());
+      total.set(sum);
+      context.write(total, NullWritable.get());
+    }
+  }
+
+  // Writes the final count in the same format as job three's output
+  private void writeResult(Path outputPath, long triangleCount) throws IOException {
+    Path resultPath = new Path(outputPath, "part-r-00000");
+    FileSystem fs = resultPath.getFileSystem(getConf());
+
+    try (PrintWriter writer = new PrintWriter(new OutputStreamWriter(fs.create(resultPath, false), "UTF-8"))) {
+      writer.println(triangleCount);
     }
   }
 
+  /**
+   * Jobs run by the last call to run(), in order, with their wall clock times.
+   *
+   * @return The jobs.
+   */
+  public List<ExecutedJob> getExecutedJobs() {
+    return executedJobs;
+  }
+
   public int run(String[] args) throws Exception {
+    String tempPath = getConf().get(TEMP_PATH_CONFIG_KEY, DEFAULT_TEMP_PATH);
+    executedJobs.clear();
+
+    /**
+     * Job Degree
+     */
+    Job jobDegree = new Job(getConf());
+    jobDegree.setJobName("mapreduce-degree");
+
+    jobDegree.setMapOutputKeyClass(LongWritable.class);
+    jobDegree.setMapOutputValueClass(LongWritable.class);
+
+    jobDegree.setOutputKeyClass(LongWritable.class);
+    jobDegree.setOutputValueClass(LongPair.class);
+
+    jobDegree.setJarByClass(TriangleCount.class);
+    jobDegree.setMapperClass(MapperDegree.class);
+    jobDegree.setReducerClass(ReducerDegree.class);
+    jobDegree.setOutputFormatClass(SequenceFileOutputFormat.class);
+    MultipleOutputs.addNamedOutput(jobDegree, HUBS_NAMED_OUTPUT, SequenceFileOutputFormat.class,
+        LongWritable.class, LongPair.class);
+
+    TextInputFormat.addInputPath(jobDegree, new Path(args[0]));
+    SequenceFileOutputFormat.setOutputPath(jobDegree, new Path(tempPath, "mapreduce-degree"));
+
     /**
      * Job One
      */
     Job jobOne = new Job(getConf());
     jobOne.setJobName("mapreduce-one");
 
-    jobOne.setMapOutputKeyClass(LongWritable.class);
-    jobOne.setMapOutputValueClass(LongWritable.class);
+    jobOne.setMapOutputKeyClass(LongPair.class);
+    jobOne.setMapOutputValueClass(LongPair.class);
 
-    jobOne.setOutputKeyClass(Text.class);
-    jobOne.setOutputValueClass(Text.class);
+    jobOne.setOutputKeyClass(LongTriple.class);
+    jobOne.setOutputValueClass(NullWritable.class);
 
     jobOne.setJarByClass(TriangleCount.class);
     jobOne.setMapperClass(MapperOne.class);
     jobOne.setReducerClass(ReducerOne.class);
+    jobOne.setInputFormatClass(SequenceFileInputFormat.class);
+    jobOne.setOutputFormatClass(SequenceFileOutputFormat.class);
+    if (getConf().getLong(HUB_DEGREE_THRESHOLD_CONFIG_KEY, DEFAULT_HUB_DEGREE_THRESHOLD) > 0) {
+      jobOne.getConfiguration().set(HUB_PATH_CONFIG_KEY, new Path(tempPath, "mapreduce-degree").toString());
+    }
 
-    TextInputFormat.addInputPath(jobOne, new Path(args[0]));
-    TextOutputFormat.setOutputPath(jobOne, new Path("/user/rayandrew/temp/mapreduce-one"));
+    SequenceFileInputFormat.addInputPath(jobOne, new Path(tempPath, "mapreduce-degree/part-*"));
+    SequenceFileOutputFormat.setOutputPath(jobOne, new Path(tempPath, "mapreduce-one"));
 
     /**
      * Job Two
@@ -155,18 +472,21 @@ public class TriangleCount extends Configured implements Tool {
     Job jobTwo = new Job(getConf());
     jobTwo.setJobName("mapreduce-two");
 
-    jobTwo.setMapOutputKeyClass(Text.class);
-    jobTwo.setMapOutputValueClass(LongWritable.class);
+    jobTwo.setMapOutputKeyClass(LongTriple.class);
+    jobTwo.setMapOutputValueClass(NullWritable.class);
 
-    jobTwo.setOutputKeyClass(LongWritable.class);
+    jobTwo.setOutputKeyClass(Text.class);
     jobTwo.setOutputValueClass(LongWritable.class);
 
     jobTwo.setJarByClass(TriangleCount.class);
-    jobTwo.setMapperClass(MapperTextLongWritable.class);
+    jobTwo.setMapperClass(Mapper.class);
+    jobTwo.setPartitionerClass(LongTriple.FirstTwoPartitioner.class);
+    jobTwo.setGroupingComparatorClass(LongTriple.FirstTwoComparator.class);
     jobTwo.setReducerClass(ReducerTwo.class);
+    jobTwo.setInputFormatClass(SequenceFileInputFormat.class);
 
-    TextInputFormat.addInputPath(jobTwo, new Path("/user/rayandrew/temp/mapreduce-one"));
-    TextOutputFormat.setOutputPath(jobTwo, new Path("/user/rayandrew/temp/mapreduce-two"));
+    SequenceFileInputFormat.addInputPath(jobTwo, new Path(tempPath, "mapreduce-one"));
+    TextOutputFormat.setOutputPath(jobTwo, new Path(tempPath, "mapreduce-two"));
 
     /**
      * Job Three
@@ -183,16 +503,24 @@ public class TriangleCount extends Configured implements Tool {
 
     jobThree.setJarByClass(TriangleCount.class);
     jobThree.setMapperClass(MapperTextLongWritable.class);
+    jobThree.setCombinerClass(SumCombiner.class);
     jobThree.setReducerClass(ReducerThree.class);
 
-    TextInputFormat.addInputPath(jobThree, new Path("/user/rayandrew/temp/mapreduce-two"));
+    TextInputFormat.addInputPath(jobThree, new Path(tempPath, "mapreduce-two"));
     TextOutputFormat.setOutputPath(jobThree, new Path(args[1]));
 
-    int ret = jobOne.waitForCompletion(true) ? 0 : 1;
+    int ret = ExecutedJob.run(jobDegree, executedJobs) ? 0 : 1;
     if (ret == 0)
-      ret = jobTwo.waitForCompletion(true) ? 0 : 1;
+      ret = ExecutedJob.run(jobOne, executedJobs) ? 0 : 1;
     if (ret == 0)
-      ret = jobThree.waitForCompletion(true) ? 0 : 1;
+      ret = ExecutedJob.run(jobTwo, executedJobs) ? 0 : 1;
+    if (ret == 0) {
+      if (getConf().getBoolean(COUNTER_AGGREGATION_CONFIG_KEY, DEFAULT_COUNTER_AGGREGATION)) {
+        writeResult(new Path(args[1]), jobTwo.getCounters().findCounter(TriangleCounter.TRIANGLES).getValue());
+      } else {
+        ret = ExecutedJob.run(jobThree, executedJobs) ? 0 : 1;
+      }
+    }
 
     return ret;
   }
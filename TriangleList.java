@@ -0,0 +1,99 @@
+import java.io.*;
+
+/**
+ * Packed binary list of triangles, written by TriangleTypePartition when
+ * trianglesPath is set.
+ *
+ * A file holds every triangle once, its vertices in ascending order, laid out
+ * as:
+ *
+ * - header (8 bytes): magic, version (ints)
+ *
+ * - records: the lowest vertex as a zig-zag encoded varint delta to the lowest
+ * vertex of the previous triangle (of 0 for the first), then the gaps from it
+ * to the middle vertex and from the middle to the highest vertex as varints
+ *
+ * The records run to the end of the file.
+ */
+public class TriangleList {
+  public static final int MAGIC = 0x54545054; // "TTPT"
+  public static final int VERSION = 1;
+
+  public static final int HEADER_SIZE = 8;
+
+  /** Writes triangles, in any order. */
+  public static class Writer implements Closeable {
+    private final DataOutputStream out;
+    private long triangleCount = 0;
+    private long previousFirst = 0;
+
+    public Writer(OutputStream out) throws IOException {
+      this.out = new DataOutputStream(new BufferedOutputStream(out, 1 << 16));
+      this.out.writeInt(MAGIC);
+      this.out.writeInt(VERSION);
+    }
+
+    /** Append a triangle, given by its vertices in any order. */
+    public void append(long u, long v, long w) throws IOException {
+      long first = Math.min(u, Math.min(v, w));
+      long third = Math.max(u, Math.max(v, w));
+      long second = u ^ v ^ w ^ first ^ third;
+      if (first == second || second == third) {
+        throw new IllegalArgumentException("A triangle needs three distinct vertices");
+      }
+
+      Varints.writeVarLong(out, Varints.zigZag(first - previousFirst));
+      Varints.writeVarLong(out, second - first);
+      Varints.writeVarLong(out, third - second);
+      previousFirst = first;
+      triangleCount++;
+    }
+
+    public long getTriangleCount() {
+      return triangleCount;
+    }
+
+    @Override
+    public void close() throws IOException {
+      out.close();
+    }
+  }
+
+  /** Reads the triangles of a file in order. */
+  public static class Reader implements Closeable {
+    public long first = 0;
+    public long second = 0;
+    public long third = 0;
+
+    private final DataInputStream in;
+
+    public Reader(InputStream in) throws IOException {
+      this.in = new DataInputStream(new BufferedInputStream(in, 1 << 16));
+      if (this.in.readInt() != MAGIC || this.in.readInt() != VERSION) {
+        throw new IOException("Not a triangle list");
+      }
+    }
+
+    /**
+     * Read the next triangle into the public fields.
+     *
+     * @return <tt>false</tt> at the end of the file.
+     */
+    public boolean next() throws IOException {
+      int b = in.read();
+      if (b < 0) {
+        return false;
+      }
+
+      first += Varints.unZigZag(Varints.readVarLong(in, b));
+      second = first + Varints.readVarLong(in);
+      third = second + Varints.readVarLong(in);
+      return true;
+    }
+
+    @Override
+    public void close() throws IOException {
+      in.close();
+    }
+  }
+}
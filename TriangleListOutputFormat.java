@@ -0,0 +1,36 @@
+import java.io.IOException;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.io.NullWritable;
+import org.apache.hadoop.mapreduce.RecordWriter;
+import org.apache.hadoop.mapreduce.TaskAttemptContext;
+import org.apache.hadoop.mapreduce.lib.output.FileOutputFormat;
+
+/**
+ * Writes (LongTriple, NullWritable) records, one triangle each, as a
+ * TriangleList file per task.
+ */
+public class TriangleListOutputFormat extends FileOutputFormat<LongTriple, NullWritable> {
+
+  @Override
+  public RecordWriter<LongTriple, NullWritable> getRecordWriter(TaskAttemptContext context) throws IOException {
+    Configuration conf = context.getConfiguration();
+    Path file = getDefaultWorkFile(context, "");
+    FileSystem fs = file.getFileSystem(conf);
+    final TriangleList.Writer writer = new TriangleList.Writer(fs.create(file, false));
+
+    return new RecordWriter<LongTriple, NullWritable>() {
+      @Override
+      public void write(LongTriple key, NullWritable value) throws IOException {
+        writer.append(key.first, key.second, key.third);
+      }
+
+      @Override
+      public void close(TaskAttemptContext context) throws IOException {
+        writer.close();
+      }
+    };
+  }
+}
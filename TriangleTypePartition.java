@@ -2,6 +2,10 @@ import java.lang.*;
 import java.io.*;
 import java.util.*;
 
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.hadoop.fs.FileStatus;
+import org.apache.hadoop.fs.FileSystem;
 import org.apache.hadoop.fs.Path;
 import org.apache.hadoop.conf.*;
 import org.apache.hadoop.io.*;
@@ -31,25 +35,126 @@ public class TriangleTypePartition extends Configured implements Tool {
   public static final long DEFAULT_PARTITION_COUNT = 64;
   public static final String PARTITION_COUNT_CONFIG_KEY = "partitionCount";
 
-  public static final int ESTIMATED_VERTEX_COUNT_PER_REDUCE = 200000;
-  public static final int ESTIMATED_VERTEX_DEGREE_PER_REDUCE = 100;
+  // Write and read the intermediate results as binary SequenceFiles instead of
+  // text lines. Text stays the default since it is easier to inspect.
+  public static final boolean DEFAULT_BINARY_INTERMEDIATE = false;
+  public static final String BINARY_INTERMEDIATE_CONFIG_KEY = "binaryIntermediate";
+  public static final boolean DEFAULT_COMPRESS_INTERMEDIATE = false;
+  public static final String COMPRESS_INTERMEDIATE_CONFIG_KEY = "compressIntermediate";
+
+  // Sum the triangle counts from job two's counters in the driver instead of
+  // running job three
+  public static final boolean DEFAULT_COUNTER_AGGREGATION = false;
+  public static final String COUNTER_AGGREGATION_CONFIG_KEY = "counterAggregation";
+
+  // Skip job one: job two reads the raw input and ReducerTwo drops the
+  // duplicate edges of each subproblem while building it
+  public static final boolean DEFAULT_FUSED_DEDUPLICATION = false;
+  public static final String FUSED_DEDUPLICATION_CONFIG_KEY = "fusedDeduplication";
+
+  // Key job two's edges by (subproblem, edge) so that each subproblem arrives
+  // sorted and is built in one pass, see CompactForward.buildSorted
+  public static final boolean DEFAULT_SECONDARY_SORT = false;
+  public static final String SECONDARY_SORT_CONFIG_KEY = "secondarySort";
+
+  // Directory for the intermediate results of the jobs
+  public static final String DEFAULT_TEMP_PATH = "/user/rayandrew/temp";
+  public static final String TEMP_PATH_CONFIG_KEY = "tempPath";
+
+  // Sorted set intersection kernel of ReducerTwo, see Intersection
+  public static final String DEFAULT_INTERSECTION = "adaptive";
+  public static final String INTERSECTION_CONFIG_KEY = "intersection";
+
+  // Subproblems with at least this edge density are counted with bitsets, in
+  // at most bitmapMemoryCap bytes per reducer, see CompactForward
+  public static final String BITMAP_DENSITY_THRESHOLD_CONFIG_KEY = "bitmapDensityThreshold";
+  public static final String BITMAP_MEMORY_CAP_CONFIG_KEY = "bitmapMemoryCap";
+
+  // Approximate mode, with edgeSampleProbability below 1 (see EdgeSampler):
+  // job two also writes the triangle count of every sampled edge, summed by
+  // the variance job
+  public static final String EDGE_TRIANGLES_NAMED_OUTPUT = "edgeTriangles";
+
+  // Side outputs go to directories of job two's output that job three skips
+  public static final String EDGE_TRIANGLES_BASE_OUTPUT_PATH = "_edgeTriangles/part";
+  public static final String VERTEX_TRIANGLES_BASE_OUTPUT_PATH = "_vertexTriangles/part";
+  public static final String TRIANGLES_DIRECTORY = "_triangles";
+  public static final String TRIANGLES_BASE_OUTPUT_PATH = TRIANGLES_DIRECTORY + "/part";
+
+  // Where to write the degree, triangle count and clustering coefficient of
+  // every vertex as a VertexTriangleList, unset to skip them. Job two writes
+  // per subproblem counts, summed by the vertices job
+  public static final String VERTEX_TRIANGLES_PATH_CONFIG_KEY = "vertexTrianglesPath";
+  public static final String VERTEX_TRIANGLES_NAMED_OUTPUT = "vertexTriangles";
+
+  // Where to write every triangle once as TriangleList files, unset to only
+  // count them. Job two's reducers write them, the driver moves them there.
+  // triangleVertices, a comma separated list of vertex ids, keeps only the
+  // triangles around these vertices
+  public static final String TRIANGLES_PATH_CONFIG_KEY = "trianglesPath";
+  public static final String TRIANGLE_VERTICES_CONFIG_KEY = "triangleVertices";
+  public static final String TRIANGLES_NAMED_OUTPUT = "triangles";
+
+  public static final int ESTIMATED_EDGE_COUNT_PER_REDUCE = 1000000;
 
   public static final Text TYPE_1_TRIANGLE_COUNT_KEY = new Text("A");
   public static final Text TYPE_2_OR_3_TRIANGLE_COUNT_KEY = new Text("B");
   public static final Text RESULT_KEY = new Text("TriangleCount");
 
+  public static enum TriangleCounter {
+    TYPE_1_TRIANGLES, TYPE_2_OR_3_TRIANGLES, SHARED_EDGE_TRIANGLE_PAIRS, LISTED_TRIANGLES
+  }
+
+  // Work done by job two's reducers, times summed over all subproblems
+  public static enum SubproblemCounter {
+    SUBPROBLEMS, EDGES_RECEIVED, DUPLICATE_EDGES, VERTICES, INTERSECTIONS, WEDGES_CHECKED, BUILD_MILLIS, SORT_MILLIS,
+    INTERSECT_MILLIS, SPILLED_SUBPROBLEMS, SPILLED_EDGES, SPILL_PASSES
+  }
+
+  private static final Log LOG = LogFactory.getLog(TriangleTypePartition.class);
+
+  final List<ExecutedJob> executedJobs = new ArrayList<ExecutedJob>();
+
+  // The vertex partitioner shared by job two's mappers and reducers
+  static VertexPartitioner vertexPartitioner(Configuration conf) {
+    return VertexPartitioner.fromConf(conf, conf.getLong(PARTITION_COUNT_CONFIG_KEY, DEFAULT_PARTITION_COUNT));
+  }
+
+  // The ascending vertex ids of triangleVertices, or null to list every
+  // triangle
+  static long[] triangleVertexFilter(Configuration conf) {
+    String[] vertices = conf.getTrimmedStrings(TRIANGLE_VERTICES_CONFIG_KEY);
+    if (vertices.length == 0) {
+      return null;
+    }
+    long[] filter = new long[vertices.length];
+    for (int i = 0; i < vertices.length; i++) {
+      filter[i] = Long.parseLong(vertices[i]);
+    }
+    Arrays.sort(filter);
+    return filter;
+  }
+
   public static class MapperOne extends Mapper<LongWritable, Text, LongPair, NullWritable> {
+    final EdgeParser parser = new EdgeParser();
+    final LongPair edge = new LongPair();
+    EdgeSampler sampler;
+
+    public void setup(Context context) {
+      sampler = EdgeSampler.fromConf(context.getConfiguration());
+    }
+
     public void map(LongWritable key, Text value, Context context) throws IOException, InterruptedException {
-      String[] valueStrings = value.toString().split("\\s+");
-      if (valueStrings.length > 1) {
-        long vertex1 = Long.parseLong(valueStrings[0]);
-        long vertex2 = Long.parseLong(valueStrings[1]);
+      if (parser.parse(value) && sampler.keep(parser.first, parser.second)) {
+        long vertex1 = parser.first;
+        long vertex2 = parser.second;
 
         if (vertex1 < vertex2) {
-          context.write(new LongPair(vertex1, vertex2), NullWritable.get());
+          edge.set(vertex1, vertex2);
         } else {
-          context.write(new LongPair(vertex2, vertex1), NullWritable.get());
+          edge.set(vertex2, vertex1);
         }
+        context.write(edge, NullWritable.get());
       }
     }
   }
@@ -61,154 +166,324 @@ public class TriangleTypePartition extends Configured implements Tool {
     }
   }
 
-  public static class MapperTwo extends Mapper<LongWritable, Text, Text, LongPair> {
-    public void map(LongWritable key, Text value, Context context) throws IOException, InterruptedException {
-      Configuration conf = context.getConfiguration();
-      long p = conf.getLong(PARTITION_COUNT_CONFIG_KEY, DEFAULT_PARTITION_COUNT);
+  public static class BinaryReducerOne extends Reducer<LongPair, NullWritable, LongPair, NullWritable> {
+    public void reduce(LongPair key, Iterable<NullWritable> values, Context context)
+        throws IOException, InterruptedException {
+      context.write(key, NullWritable.get());
+    }
+  }
 
-      String[] valueStrings = value.toString().split("\\s+");
-      if (valueStrings.length > 1) {
-        long vertex1 = Long.parseLong(valueStrings[0]);
-        long vertex2 = Long.parseLong(valueStrings[1]);
-        long vertexPartition1 = vertex1 % p;
-        long vertexPartition2 = vertex2 % p;
-
-        for (long a = 0; a < p - 1; a++) {
-          for (long b = a + 1; b < p; b++) {
-            if (((vertexPartition1 == a) && (vertexPartition2 == b))
-                || ((vertexPartition1 == b) && (vertexPartition2 == a))
-                || ((vertexPartition1 == a) && (vertexPartition2 == a))
-                || ((vertexPartition1 == b) && (vertexPartition2 == b))) {
-              context.write(new Text(String.valueOf(a) + "," + String.valueOf(b)), new LongPair(vertex1, vertex2));
-            }
-          }
-        }
+  public static class MapperTwo extends Mapper<LongWritable, Text, SubproblemKey, LongPair> {
+    final EdgeParser parser = new EdgeParser();
+    SubproblemEmitter emitter;
 
-        if (vertexPartition1 != vertexPartition2) {
-          for (long a = 0; a < p - 2; a++) {
-            for (long b = a + 1; b < p - 1; b++) {
-              for (long c = b + 1; c < p; c++) {
-                if (((vertexPartition1 == a) && (vertexPartition2 == a))
-                    || ((vertexPartition1 == a) && (vertexPartition2 == b))
-                    || ((vertexPartition1 == a) && (vertexPartition2 == c))
-                    || ((vertexPartition1 == b) && (vertexPartition2 == a))
-                    || ((vertexPartition1 == b) && (vertexPartition2 == b))
-                    || ((vertexPartition1 == b) && (vertexPartition2 == c))
-                    || ((vertexPartition1 == c) && (vertexPartition2 == a))
-                    || ((vertexPartition1 == c) && (vertexPartition2 == b))
-                    || ((vertexPartition1 == c) && (vertexPartition2 == c))) {
-                  context.write(new Text(String.valueOf(a) + "," + String.valueOf(b) + "," + String.valueOf(c)),
-                      new LongPair(vertex1, vertex2));
-                }
-              }
-            }
-          }
-        }
+    public void setup(Context context) {
+      Configuration conf = context.getConfiguration();
+      emitter = new SubproblemEmitter(vertexPartitioner(conf), EdgeSampler.fromConf(conf));
+    }
+
+    public void map(LongWritable key, Text value, Context context) throws IOException, InterruptedException {
+      // Raw input lines in fused mode: both directions of an edge go to the
+      // same subproblems, so only self loops are dropped here
+      if (parser.parse(value) && parser.first != parser.second) {
+        emitter.emit(parser.first, parser.second, context);
       }
     }
   }
 
-  public static class ReducerTwo extends Reducer<Text, LongPair, Text, LongWritable> {
-    final Map<Long, List<Long>> adjacencyList = new HashMap(ESTIMATED_VERTEX_COUNT_PER_REDUCE);
-    List<Long> vertices = new ArrayList(ESTIMATED_VERTEX_COUNT_PER_REDUCE);
+  public static class BinaryMapperTwo extends Mapper<LongPair, NullWritable, SubproblemKey, LongPair> {
+    SubproblemEmitter emitter;
 
-    // Comparator for ordering vertices by degree, then by index in descending order
-    public int compareVertices(long v1, long v2) {
-      return Long.compare((((long) this.adjacencyList.get(v2).size()) << 34) + v2,
-          (((long) this.adjacencyList.get(v1).size()) << 34) + v1);
+    public void setup(Context context) {
+      Configuration conf = context.getConfiguration();
+      emitter = new SubproblemEmitter(vertexPartitioner(conf), EdgeSampler.fromConf(conf));
     }
 
-    public void reduce(Text key, Iterable<LongPair> values, Context context) throws IOException, InterruptedException {
+    public void map(LongPair key, NullWritable value, Context context) throws IOException, InterruptedException {
+      emitter.emit(key.first, key.second, context);
+    }
+  }
+
+  public static class SortedMapperTwo extends Mapper<LongWritable, Text, SubproblemEdgeKey, NullWritable> {
+    final EdgeParser parser = new EdgeParser();
+    SubproblemEmitter emitter;
+
+    public void setup(Context context) {
       Configuration conf = context.getConfiguration();
-      long p = conf.getLong(PARTITION_COUNT_CONFIG_KEY, DEFAULT_PARTITION_COUNT);
+      emitter = new SubproblemEmitter(vertexPartitioner(conf), EdgeSampler.fromConf(conf));
+    }
 
-      // Add edges to the graph - assumes edges are unique
-      for (LongPair edge : values) {
+    public void map(LongWritable key, Text value, Context context) throws IOException, InterruptedException {
+      if (parser.parse(value) && parser.first != parser.second) {
+        emitter.emitEdgeKeys(parser.first, parser.second, context);
+      }
+    }
+  }
 
-        if (!adjacencyList.containsKey(edge.first)) {
-          adjacencyList.put(edge.first, new ArrayList(ESTIMATED_VERTEX_DEGREE_PER_REDUCE));
-          vertices.add(edge.first);
-        }
-        if (!adjacencyList.containsKey(edge.second)) {
-          adjacencyList.put(edge.second, new ArrayList(ESTIMATED_VERTEX_DEGREE_PER_REDUCE));
-          vertices.add(edge.second);
-        }
+  public static class SortedBinaryMapperTwo extends Mapper<LongPair, NullWritable, SubproblemEdgeKey, NullWritable> {
+    SubproblemEmitter emitter;
+
+    public void setup(Context context) {
+      Configuration conf = context.getConfiguration();
+      emitter = new SubproblemEmitter(vertexPartitioner(conf), EdgeSampler.fromConf(conf));
+    }
+
+    public void map(LongPair key, NullWritable value, Context context) throws IOException, InterruptedException {
+      emitter.emitEdgeKeys(key.first, key.second, context);
+    }
+  }
+
+  /**
+   * Counts the triangles of one subproblem per reduce call and reports them,
+   * subclasses pass the subproblem's edges to addEdge. Subproblems of more
+   * than maxSubproblemEdges edges are spilled to local disk and counted by
+   * SpilledSubproblem instead of running out of memory.
+   */
+  public static abstract class SubproblemReducer<K, V> extends Reducer<K, V, Text, LongWritable> {
+    final CompactForward graph = new CompactForward(ESTIMATED_EDGE_COUNT_PER_REDUCE);
+    final boolean sortedEdges;
+    VertexPartitioner partitioner;
+    MultipleOutputs<Text, LongWritable> multipleOutputs;
+    CompactForward.EdgeTriangleVisitor edgeTriangleWriter = null;
+    VertexTriangleWriter vertexTriangleWriter = null;
+    TriangleWriter triangleWriter = null;
+    long[] triangleVertexFilter = null;
+    SlowestCalls slowestSubproblems;
+    long maxEdgeCount;
+    SpilledSubproblem spilled = null;
+    long buildNanos = 0;
+    long sortNanos = 0;
+    long intersectNanos = 0;
+
+    /**
+     * @param sortedEdges Whether edges arrive sorted, see
+     *                    CompactForward.buildSorted.
+     */
+    SubproblemReducer(boolean sortedEdges) {
+      this.sortedEdges = sortedEdges;
+    }
 
-        adjacencyList.get(edge.first).add(edge.second);
-        adjacencyList.get(edge.second).add(edge.first);
+    public void setup(Context context) {
+      Configuration conf = context.getConfiguration();
+      partitioner = vertexPartitioner(conf);
+      multipleOutputs = new MultipleOutputs<Text, LongWritable>(context);
+      slowestSubproblems = new SlowestCalls(conf);
+      maxEdgeCount = SpilledSubproblem.maxEdgeCount(conf);
+      graph.setDeduplicate(conf.getBoolean(FUSED_DEDUPLICATION_CONFIG_KEY, DEFAULT_FUSED_DEDUPLICATION));
+      graph.setIntersection(Intersection.forName(conf.get(INTERSECTION_CONFIG_KEY, DEFAULT_INTERSECTION)));
+      graph.setBitmap(
+          conf.getDouble(BITMAP_DENSITY_THRESHOLD_CONFIG_KEY, CompactForward.DEFAULT_BITMAP_DENSITY_THRESHOLD),
+          conf.getLong(BITMAP_MEMORY_CAP_CONFIG_KEY, CompactForward.DEFAULT_BITMAP_MEMORY_CAP));
+
+      if (EdgeSampler.fromConf(conf).isSampling()) {
+        graph.setEdgeTriangleCounting(true);
+        final long p = partitioner.getPartitionCount();
+        edgeTriangleWriter = new CompactForward.EdgeTriangleVisitor() {
+          final LongPair edge = new LongPair();
+          final LongWritable count = new LongWritable();
+
+          public void visit(long u, long v, int type1TriangleCount, int type2Or3TriangleCount)
+              throws IOException, InterruptedException {
+            // Type 1 triangles are counted in p - 1 subproblems, weigh the
+            // others p - 1 times so the sums over subproblems divide by p - 1
+            edge.set(Math.min(u, v), Math.max(u, v));
+            count.set(type1TriangleCount + (p - 1) * type2Or3TriangleCount);
+            multipleOutputs.write(EDGE_TRIANGLES_NAMED_OUTPUT, edge, count, EDGE_TRIANGLES_BASE_OUTPUT_PATH);
+          }
+        };
       }
+      if (conf.get(VERTEX_TRIANGLES_PATH_CONFIG_KEY) != null) {
+        graph.setEdgeTriangleCounting(true);
+        vertexTriangleWriter = new VertexTriangleWriter(multipleOutputs, partitioner.getPartitionCount());
+      }
+      if (conf.get(TRIANGLES_PATH_CONFIG_KEY) != null) {
+        triangleWriter = new TriangleWriter(multipleOutputs, partitioner);
+        triangleVertexFilter = triangleVertexFilter(conf);
+      }
+    }
 
-      // Sort vertices and adjacency list
-      Collections.sort(vertices, new Comparator<Long>() {
-        @Override
-        public int compare(Long v1, Long v2) {
-          return compareVertices(v1, v2);
+    /**
+     * Pass every edge of a subproblem to addEdge.
+     *
+     * @return The number of edges received.
+     */
+    abstract long addEdges(K key, Iterable<V> values) throws IOException;
+
+    /** Id of a subproblem's key, see Subproblems.id. */
+    abstract int subproblemId(K key);
+
+    // Adds an edge to the graph, or to disk once the graph is full
+    void addEdge(long u, long v) throws IOException {
+      if (spilled != null) {
+        spilled.add(u, v);
+      } else if (graph.getEdgeCount() < maxEdgeCount) {
+        if (sortedEdges) {
+          graph.addSortedEdge(u, v);
+        } else {
+          graph.addEdge(u, v);
         }
-      });
-      for (Long vertex : vertices) {
-        Collections.sort(adjacencyList.get(vertex), new Comparator<Long>() {
-          @Override
-          public int compare(Long v1, Long v2) {
-            return compareVertices(v1, v2);
-          }
-        });
+      } else {
+        LOG.warn("Subproblem exceeds " + maxEdgeCount + " edges, spilling it to local disk");
+        spilled = new SpilledSubproblem(graph, maxEdgeCount);
+        spilled.add(u, v);
       }
+    }
 
-      long type1TriangleCount = 0;
-      long type2Or3TriangleCount = 0;
-
-      for (Long v1 : vertices) {
-        List<Long> v1Neighbors = adjacencyList.get(v1);
-
-        for (Long v2 : v1Neighbors) {
-          if (compareVertices(v1, v2) < 0) {
-            List<Long> v2Neighbors = adjacencyList.get(v2);
-
-            // Find intersections between v1Neighbors and v2Neighbors
-            // using a method similar to merge sort's merge
-            int i1 = 0;
-            int i2 = 0;
-            while ((i1 < v1Neighbors.size()) && (i2 < v2Neighbors.size())
-                && (compareVertices(v1Neighbors.get(i1), v1) < 0) && (compareVertices(v2Neighbors.get(i2), v1) < 0)) {
-              if (compareVertices(v2Neighbors.get(i2), v1Neighbors.get(i1)) < 0) {
-                i2++;
-              } else if (compareVertices(v2Neighbors.get(i2), v1Neighbors.get(i1)) > 0) {
-                i1++;
-              } else {
-                // Found an intersection (triangle)
-                long v1Partition = v1 % p;
-                long v2Partition = v2 % p;
-                long v3Partition = v1Neighbors.get(i1) % p;
-                if ((v1Partition == v2Partition) && (v2Partition == v3Partition)) {
-                  type1TriangleCount++;
-                } else {
-                  type2Or3TriangleCount++;
-                }
-                i1++;
-                i2++;
-              }
-            }
+    public void reduce(K key, Iterable<V> values, Context context) throws IOException, InterruptedException {
+      long startTime = System.nanoTime();
+      long edgeCount;
+      long type1TriangleCount;
+      long type2Or3TriangleCount;
+      String details;
+      try {
+        edgeCount = addEdges(key, values);
+
+        if (spilled == null) {
+          if (sortedEdges) {
+            graph.buildSorted();
+          } else {
+            graph.build();
+          }
+          graph.countTriangles(partitioner);
+          type1TriangleCount = graph.getType1TriangleCount();
+          type2Or3TriangleCount = graph.getType2Or3TriangleCount();
+          if (edgeTriangleWriter != null) {
+            graph.visitEdgeTriangleCounts(edgeTriangleWriter);
+          }
+          if (vertexTriangleWriter != null) {
+            long p = partitioner.getPartitionCount();
+            vertexTriangleWriter.pairSubproblem = Subproblems.isPair(subproblemId(key), p);
+            graph.visitVertexTriangleCounts(vertexTriangleWriter);
+          }
+          if (triangleWriter != null) {
+            triangleWriter.setSubproblem(subproblemId(key));
+            graph.visitTriangles(triangleVertexFilter, triangleWriter);
           }
+
+          context.getCounter(SubproblemCounter.DUPLICATE_EDGES).increment(graph.getDuplicateEdgeCount());
+          context.getCounter(SubproblemCounter.VERTICES).increment(graph.getVertexCount());
+          context.getCounter(SubproblemCounter.INTERSECTIONS).increment(graph.getIntersectionCount());
+          context.getCounter(SubproblemCounter.WEDGES_CHECKED).increment(graph.getWedgeCheckCount());
+          buildNanos += graph.getBuildNanos();
+          sortNanos += graph.getSortNanos();
+          intersectNanos += graph.getIntersectNanos();
+          details = graph.getVertexCount() + " vertices, max degree " + graph.getMaxDegree() + ", "
+              + graph.getIntersectionCount() + " intersections, " + graph.getWedgeCheckCount()
+              + " wedges checked, build " + graph.getBuildNanos() / 1000000 + " ms, sort "
+              + graph.getSortNanos() / 1000000 + " ms, intersect " + graph.getIntersectNanos() / 1000000 + " ms";
+        } else {
+          if (vertexTriangleWriter != null || triangleWriter != null) {
+            throw new IOException("Subproblem " + key + " was spilled, per vertex triangle counts and triangle listing "
+                + "need it in memory: raise the partition count or " + SpilledSubproblem.MAX_EDGE_COUNT_CONFIG_KEY);
+          }
+          spilled.countTriangles(partitioner, "Subproblem " + key);
+          type1TriangleCount = spilled.getType1TriangleCount();
+          type2Or3TriangleCount = spilled.getType2Or3TriangleCount();
+
+          context.getCounter(SubproblemCounter.SPILLED_SUBPROBLEMS).increment(1);
+          context.getCounter(SubproblemCounter.SPILLED_EDGES).increment(spilled.getEdgeCount());
+          context.getCounter(SubproblemCounter.SPILL_PASSES).increment(spilled.getPassCount());
+          details = "spilled to disk, counted in " + spilled.getPassCount() + " passes";
         }
+      } finally {
+        if (spilled != null) {
+          spilled.close();
+          spilled = null;
+        }
+        graph.clear();
       }
 
+      context.getCounter(SubproblemCounter.SUBPROBLEMS).increment(1);
+      context.getCounter(SubproblemCounter.EDGES_RECEIVED).increment(edgeCount);
+      context.getCounter(TriangleCounter.TYPE_1_TRIANGLES).increment(type1TriangleCount);
+      context.getCounter(TriangleCounter.TYPE_2_OR_3_TRIANGLES).increment(type2Or3TriangleCount);
+
       context.write(TYPE_1_TRIANGLE_COUNT_KEY, new LongWritable(type1TriangleCount));
       context.write(TYPE_2_OR_3_TRIANGLE_COUNT_KEY, new LongWritable(type2Or3TriangleCount));
+      SkewReport.write(multipleOutputs, subproblemId(key), edgeCount);
+
+      long elapsedNanos = System.nanoTime() - startTime;
+      if (slowestSubproblems.isSlow(elapsedNanos) || LOG.isDebugEnabled()) {
+        String description = "subproblem " + key + ": " + edgeCount + " edges, " + type1TriangleCount
+            + " type 1 and " + type2Or3TriangleCount + " type 2 or 3 triangles, " + details;
+        slowestSubproblems.add(elapsedNanos, description);
+        LOG.debug(description);
+      }
+    }
+
+    public void cleanup(Context context) throws IOException, InterruptedException {
+      multipleOutputs.close();
+      if (triangleWriter != null) {
+        context.getCounter(TriangleCounter.LISTED_TRIANGLES).increment(triangleWriter.listedCount);
+      }
+      context.getCounter(SubproblemCounter.BUILD_MILLIS).increment(buildNanos / 1000000);
+      context.getCounter(SubproblemCounter.SORT_MILLIS).increment(sortNanos / 1000000);
+      context.getCounter(SubproblemCounter.INTERSECT_MILLIS).increment(intersectNanos / 1000000);
+      slowestSubproblems.log(LOG, "subproblems");
+    }
+  }
+
+  public static class ReducerTwo extends SubproblemReducer<SubproblemKey, LongPair> {
+    public ReducerTwo() {
+      super(false);
+    }
+
+    long addEdges(SubproblemKey key, Iterable<LongPair> values) throws IOException {
+      // Edges are unique unless job one was fused into this job, in which case
+      // the graph drops duplicates while building
+      long edgeCount = 0;
+      for (LongPair edge : values) {
+        addEdge(edge.first, edge.second);
+        edgeCount++;
+      }
+      return edgeCount;
+    }
 
-      adjacencyList.clear();
-      vertices.clear();
+    int subproblemId(SubproblemKey key) {
+      return key.get();
+    }
+  }
+
+  public static class SortedReducerTwo extends SubproblemReducer<SubproblemEdgeKey, NullWritable> {
+    public SortedReducerTwo() {
+      super(true);
+    }
+
+    long addEdges(SubproblemEdgeKey key, Iterable<NullWritable> values) throws IOException {
+      // The key holds the current edge, edges arrive in ascending order and
+      // repeated ones are dropped as they arrive
+      long edgeCount = 0;
+      for (NullWritable value : values) {
+        addEdge(key.first, key.second);
+        edgeCount++;
+      }
+      return edgeCount;
+    }
+
+    int subproblemId(SubproblemEdgeKey key) {
+      return key.id;
     }
   }
 
   public static class MapperThree extends Mapper<LongWritable, Text, Text, LongWritable> {
+    final EdgeParser parser = new EdgeParser();
+    final Text countKey = new Text();
+    final LongWritable count = new LongWritable();
+
     public void map(LongWritable key, Text value, Context context) throws IOException, InterruptedException {
-      String[] valueStrings = value.toString().split("\\s+");
-      if (valueStrings.length > 1) {
-        context.write(new Text(valueStrings[0].trim()), new LongWritable(Long.parseLong(valueStrings[1])));
+      if (parser.parseKeyValue(value, countKey)) {
+        count.set(parser.second);
+        context.write(countKey, count);
       }
     }
   }
 
+  public static class BinaryMapperThree extends Mapper<Text, LongWritable, Text, LongWritable> {
+    public void map(Text key, LongWritable value, Context context) throws IOException, InterruptedException {
+      context.write(key, value);
+    }
+  }
+
   public static class ReducerThree extends Reducer<Text, LongWritable, Text, LongWritable> {
     public void reduce(Text key, Iterable<LongWritable> values, Context context)
         throws IOException, InterruptedException {
@@ -228,14 +503,281 @@ public class TriangleTypePartition extends Configured implements Tool {
     }
   }
 
+  /**
+   * Writes the degree and triangle count of each vertex of a subproblem,
+   * weighted so that their sums over all subproblems divide by p - 1: type 1
+   * triangles are seen in p - 1 subproblems and weigh 1, the others p - 1.
+   * Degrees come from pair subproblems only, where an edge inside a partition
+   * is seen p - 1 times and an edge across two partitions once.
+   */
+  static class VertexTriangleWriter implements CompactForward.VertexTriangleVisitor {
+    final MultipleOutputs<?, ?> multipleOutputs;
+    final long p;
+    final LongWritable vertex = new LongWritable();
+    final LongPair counts = new LongPair();
+    boolean pairSubproblem = false;
+
+    VertexTriangleWriter(MultipleOutputs<?, ?> multipleOutputs, long p) {
+      this.multipleOutputs = multipleOutputs;
+      this.p = p;
+    }
+
+    public void visit(long vertex, int degree, int samePartitionDegree, long type1TriangleCount,
+        long type2Or3TriangleCount) throws IOException, InterruptedException {
+      long weightedDegree = pairSubproblem ? samePartitionDegree + (p - 1) * (degree - samePartitionDegree) : 0;
+      long weightedTriangleCount = type1TriangleCount + (p - 1) * type2Or3TriangleCount;
+      if (weightedDegree > 0 || weightedTriangleCount > 0) {
+        this.vertex.set(vertex);
+        counts.set(weightedDegree, weightedTriangleCount);
+        multipleOutputs.write(VERTEX_TRIANGLES_NAMED_OUTPUT, this.vertex, counts, VERTEX_TRIANGLES_BASE_OUTPUT_PATH);
+      }
+    }
+  }
+
+  /**
+   * Writes the triangles of a subproblem so that each is written once. Type 2
+   * and 3 triangles are only in one subproblem, but the type 1 triangles of
+   * partition a are in the p - 1 pair subproblems with a: they are written
+   * from (a, a + 1 mod p) only, which spreads them over p subproblems.
+   */
+  static class TriangleWriter implements CompactForward.TriangleVisitor {
+    final MultipleOutputs<?, ?> multipleOutputs;
+    final VertexPartitioner partitioner;
+    final long p;
+    final LongTriple triangle = new LongTriple();
+    final long[] partitions = new long[3];
+    // Partitions whose type 1 triangles the current subproblem writes
+    long type1Partition1 = Subproblems.NO_PARTITION;
+    long type1Partition2 = Subproblems.NO_PARTITION;
+    long listedCount = 0;
+
+    TriangleWriter(MultipleOutputs<?, ?> multipleOutputs, VertexPartitioner partitioner) {
+      this.multipleOutputs = multipleOutputs;
+      this.partitioner = partitioner;
+      this.p = partitioner.getPartitionCount();
+    }
+
+    void setSubproblem(int id) {
+      Subproblems.partitions(id, p, partitions);
+      long a = partitions[0];
+      long b = partitions[1];
+      boolean pair = partitions[2] == Subproblems.NO_PARTITION;
+      type1Partition1 = pair && b == a + 1 ? a : Subproblems.NO_PARTITION;
+      type1Partition2 = pair && a == 0 && b == p - 1 ? b : Subproblems.NO_PARTITION;
+    }
+
+    public void visit(long u, long v, long w, boolean type1) throws IOException, InterruptedException {
+      if (type1) {
+        long partition = partitioner.partition(u);
+        if (partition != type1Partition1 && partition != type1Partition2) {
+          return;
+        }
+      }
+      triangle.set(u, v, w);
+      multipleOutputs.write(TRIANGLES_NAMED_OUTPUT, triangle, NullWritable.get(), TRIANGLES_BASE_OUTPUT_PATH);
+      listedCount++;
+    }
+  }
+
+  // Sums the weighted degrees and triangle counts of a vertex
+  public static class VertexTriangleCombiner extends Reducer<LongWritable, LongPair, LongWritable, LongPair> {
+    final LongPair sum = new LongPair();
+
+    public void reduce(LongWritable key, Iterable<LongPair> values, Context context)
+        throws IOException, InterruptedException {
+      long degree = 0;
+      long triangleCount = 0;
+      for (LongPair value : values) {
+        degree += value.first;
+        triangleCount += value.second;
+      }
+      sum.set(degree, triangleCount);
+      context.write(key, sum);
+    }
+  }
+
+  // Writes the degree and triangle count of a vertex, removing the weights
+  public static class VertexTriangleReducer extends Reducer<LongWritable, LongPair, LongWritable, LongPair> {
+    final LongPair result = new LongPair();
+
+    public void reduce(LongWritable key, Iterable<LongPair> values, Context context)
+        throws IOException, InterruptedException {
+      long p = context.getConfiguration().getLong(PARTITION_COUNT_CONFIG_KEY, DEFAULT_PARTITION_COUNT);
+      long degree = 0;
+      long triangleCount = 0;
+      for (LongPair value : values) {
+        degree += value.first;
+        triangleCount += value.second;
+      }
+      result.set(degree / (p - 1), triangleCount / (p - 1));
+      context.write(key, result);
+    }
+  }
+
+  // Sums the triangle counts of a sampled edge over its subproblems
+  public static class EdgeTriangleCombiner extends Reducer<LongPair, LongWritable, LongPair, LongWritable> {
+    final LongWritable sum = new LongWritable();
+
+    public void reduce(LongPair key, Iterable<LongWritable> values, Context context)
+        throws IOException, InterruptedException {
+      long total = 0;
+      for (LongWritable value : values) {
+        total += value.get();
+      }
+      sum.set(total);
+      context.write(key, sum);
+    }
+  }
+
+  // Counts the pairs of sampled triangles sharing each sampled edge
+  public static class EdgeTriangleReducer extends Reducer<LongPair, LongWritable, NullWritable, NullWritable> {
+    public void reduce(LongPair key, Iterable<LongWritable> values, Context context)
+        throws IOException, InterruptedException {
+      long p = context.getConfiguration().getLong(PARTITION_COUNT_CONFIG_KEY, DEFAULT_PARTITION_COUNT);
+      long total = 0;
+      for (LongWritable value : values) {
+        total += value.get();
+      }
+
+      long triangleCount = total / (p - 1);
+      context.getCounter(TriangleCounter.SHARED_EDGE_TRIANGLE_PAIRS).increment(triangleCount * (triangleCount - 1) / 2);
+    }
+  }
+
+  private static void setSequenceFileOutput(Job job, boolean compress) {
+    job.setOutputFormatClass(SequenceFileOutputFormat.class);
+    if (compress) {
+      SequenceFileOutputFormat.setCompressOutput(job, true);
+      SequenceFileOutputFormat.setOutputCompressionType(job, SequenceFile.CompressionType.BLOCK);
+    }
+  }
+
+  // Writes the final counts in the same format as job three's output
+  private void writeResult(Path outputPath, long type1TriangleCount, long type2Or3TriangleCount)
+      throws IOException {
+    Path resultPath = new Path(outputPath, "part-r-00000");
+    FileSystem fs = resultPath.getFileSystem(getConf());
+
+    try (PrintWriter writer = new PrintWriter(new OutputStreamWriter(fs.create(resultPath, false), "UTF-8"))) {
+      writer.println(TYPE_1_TRIANGLE_COUNT_KEY + "\t" + type1TriangleCount);
+      writer.println(TYPE_2_OR_3_TRIANGLE_COUNT_KEY + "\t" + type2Or3TriangleCount);
+    }
+  }
+
+  // Approximate mode: counts the pairs of sampled triangles sharing an edge
+  private Job varianceJob(Path edgeTrianglesPath) throws IOException {
+    Job jobVariance = new Job(getConf());
+    jobVariance.setJobName("mapreduce-variance");
+
+    jobVariance.setMapOutputKeyClass(LongPair.class);
+    jobVariance.setMapOutputValueClass(LongWritable.class);
+    jobVariance.setJarByClass(TriangleTypePartition.class);
+    jobVariance.setCombinerClass(EdgeTriangleCombiner.class);
+    jobVariance.setReducerClass(EdgeTriangleReducer.class);
+
+    jobVariance.setInputFormatClass(SequenceFileInputFormat.class);
+    SequenceFileInputFormat.addInputPath(jobVariance, edgeTrianglesPath);
+    jobVariance.setOutputFormatClass(NullOutputFormat.class);
+    return jobVariance;
+  }
+
+  // Per vertex triangle counts, when vertexTrianglesPath is set
+  private Job verticesJob(Path jobTwoOutputPath, Path vertexTrianglesPath) throws IOException {
+    Job jobVertices = new Job(getConf());
+    jobVertices.setJobName("mapreduce-vertices");
+
+    jobVertices.setOutputKeyClass(LongWritable.class);
+    jobVertices.setOutputValueClass(LongPair.class);
+    jobVertices.setJarByClass(TriangleTypePartition.class);
+    jobVertices.setCombinerClass(VertexTriangleCombiner.class);
+    jobVertices.setReducerClass(VertexTriangleReducer.class);
+
+    jobVertices.setInputFormatClass(SequenceFileInputFormat.class);
+    SequenceFileInputFormat.addInputPath(jobVertices,
+        new Path(jobTwoOutputPath, VERTEX_TRIANGLES_BASE_OUTPUT_PATH + "-*"));
+    jobVertices.setOutputFormatClass(VertexTriangleListOutputFormat.class);
+    VertexTriangleListOutputFormat.setOutputPath(jobVertices, vertexTrianglesPath);
+    return jobVertices;
+  }
+
+  // Moves the triangles written by job two to trianglesPath
+  private void moveTriangles(Path jobTwoOutputPath, Path trianglesPath) throws IOException {
+    Path listedPath = new Path(jobTwoOutputPath, TRIANGLES_DIRECTORY);
+    FileSystem fs = listedPath.getFileSystem(getConf());
+
+    // No file when no reducer found a triangle to write
+    if (!fs.exists(listedPath)) {
+      fs.mkdirs(trianglesPath);
+      return;
+    }
+    if (trianglesPath.getParent() != null) {
+      fs.mkdirs(trianglesPath.getParent());
+    }
+    if (!fs.rename(listedPath, trianglesPath)) {
+      throw new IOException("Could not move the triangles from " + listedPath + " to " + trianglesPath);
+    }
+  }
+
+  /**
+   * Jobs run by the last call to run(), in order, with their wall clock times.
+   *
+   * @return The jobs.
+   */
+  public List<ExecutedJob> getExecutedJobs() {
+    return executedJobs;
+  }
+
   public int run(String[] args) throws Exception {
 
     /* Set up configuration */
 
     String inputPath = args[0];
     String outputPath = args[1];
-    long partitionCount = Long.parseLong(args[2]);
+    // Inputs converted by EdgeListConverter are already deduplicated
+    boolean binaryInput = BinaryEdgeListInputFormat.isBinaryEdgeList(new Path(inputPath), getConf());
+    long partitionCount;
+    if (PartitionCountEstimator.AUTO.equalsIgnoreCase(args[2])) {
+      PartitionCountEstimator estimator = new PartitionCountEstimator(getConf());
+      estimator.sample(new Path(inputPath), binaryInput);
+      partitionCount = estimator.choosePartitionCount();
+      estimator.print(System.out, partitionCount);
+    } else {
+      partitionCount = Long.parseLong(args[2]);
+    }
+    if (partitionCount < 2 || Subproblems.subproblemCount(partitionCount) > Integer.MAX_VALUE) {
+      throw new IllegalArgumentException("Partition count must be at least 2 and at most about 2300");
+    }
     getConf().setLong(PARTITION_COUNT_CONFIG_KEY, partitionCount);
+    boolean binaryIntermediate = getConf().getBoolean(BINARY_INTERMEDIATE_CONFIG_KEY, DEFAULT_BINARY_INTERMEDIATE);
+    boolean compressIntermediate = getConf().getBoolean(COMPRESS_INTERMEDIATE_CONFIG_KEY,
+        DEFAULT_COMPRESS_INTERMEDIATE);
+    boolean counterAggregation = getConf().getBoolean(COUNTER_AGGREGATION_CONFIG_KEY, DEFAULT_COUNTER_AGGREGATION);
+    boolean fusedDeduplication = !binaryInput
+        && getConf().getBoolean(FUSED_DEDUPLICATION_CONFIG_KEY, DEFAULT_FUSED_DEDUPLICATION);
+    getConf().setBoolean(FUSED_DEDUPLICATION_CONFIG_KEY, fusedDeduplication);
+    boolean secondarySort = getConf().getBoolean(SECONDARY_SORT_CONFIG_KEY, DEFAULT_SECONDARY_SORT);
+    String tempPath = getConf().get(TEMP_PATH_CONFIG_KEY, DEFAULT_TEMP_PATH);
+    executedJobs.clear();
+    // Fail before running any job on an unknown kernel or partition hash
+    Intersection.forName(getConf().get(INTERSECTION_CONFIG_KEY, DEFAULT_INTERSECTION));
+    VertexPartitioner partitioner = vertexPartitioner(getConf());
+    EdgeSampler sampler = EdgeSampler.fromConf(getConf());
+    String vertexTrianglesPath = getConf().get(VERTEX_TRIANGLES_PATH_CONFIG_KEY);
+    if (vertexTrianglesPath != null && sampler.isSampling()) {
+      throw new IllegalArgumentException("Per vertex triangle counts need exact mode, unset "
+          + EdgeSampler.PROBABILITY_CONFIG_KEY);
+    }
+    String trianglesPath = getConf().get(TRIANGLES_PATH_CONFIG_KEY);
+    if (trianglesPath != null) {
+      if (sampler.isSampling()) {
+        throw new IllegalArgumentException("Triangle listing needs exact mode, unset "
+            + EdgeSampler.PROBABILITY_CONFIG_KEY);
+      }
+      if (new Path(trianglesPath).getFileSystem(getConf()).exists(new Path(trianglesPath))) {
+        throw new IOException("Triangles path " + trianglesPath + " already exists");
+      }
+      triangleVertexFilter(getConf());
+    }
 
     /* Job 1: Remove duplicate edges */
 
@@ -244,32 +786,72 @@ public class TriangleTypePartition extends Configured implements Tool {
 
     jobOne.setMapOutputKeyClass(LongPair.class);
     jobOne.setMapOutputValueClass(NullWritable.class);
-    jobOne.setOutputKeyClass(Text.class);
+    jobOne.setOutputKeyClass(binaryIntermediate ? LongPair.class : Text.class);
     jobOne.setOutputValueClass(NullWritable.class);
 
     jobOne.setJarByClass(TriangleTypePartition.class);
     jobOne.setMapperClass(MapperOne.class);
-    jobOne.setReducerClass(ReducerOne.class);
+    jobOne.setReducerClass(binaryIntermediate ? BinaryReducerOne.class : ReducerOne.class);
 
     TextInputFormat.addInputPath(jobOne, new Path(inputPath));
-    TextOutputFormat.setOutputPath(jobOne, new Path("/user/rayandrew/temp/mapreduce-one"));
+    if (binaryIntermediate) {
+      setSequenceFileOutput(jobOne, compressIntermediate);
+    }
+    TextOutputFormat.setOutputPath(jobOne, new Path(tempPath, "mapreduce-one"));
 
     /* Job 2: Triangle Type Partition algorithm */
 
     Job jobTwo = new Job(getConf());
     jobTwo.setJobName("mapreduce-two");
 
-    jobTwo.setMapOutputKeyClass(Text.class);
-    jobTwo.setMapOutputValueClass(LongPair.class);
     jobTwo.setOutputKeyClass(Text.class);
     jobTwo.setOutputValueClass(LongWritable.class);
-
     jobTwo.setJarByClass(TriangleTypePartition.class);
-    jobTwo.setMapperClass(MapperTwo.class);
-    jobTwo.setReducerClass(ReducerTwo.class);
 
-    TextInputFormat.addInputPath(jobTwo, new Path("/user/rayandrew/temp/mapreduce-one"));
-    TextOutputFormat.setOutputPath(jobTwo, new Path("/user/rayandrew/temp/mapreduce-two"));
+    boolean binaryMapper = binaryInput || (binaryIntermediate && !fusedDeduplication);
+    if (secondarySort) {
+      jobTwo.setMapOutputKeyClass(SubproblemEdgeKey.class);
+      jobTwo.setMapOutputValueClass(NullWritable.class);
+      jobTwo.setMapperClass(binaryMapper ? SortedBinaryMapperTwo.class : SortedMapperTwo.class);
+      jobTwo.setPartitionerClass(SubproblemEdgeKey.Partitioner.class);
+      jobTwo.setGroupingComparatorClass(SubproblemEdgeKey.IdComparator.class);
+      jobTwo.setReducerClass(SortedReducerTwo.class);
+    } else {
+      jobTwo.setMapOutputKeyClass(SubproblemKey.class);
+      jobTwo.setMapOutputValueClass(LongPair.class);
+      jobTwo.setMapperClass(binaryMapper ? BinaryMapperTwo.class : MapperTwo.class);
+      jobTwo.setPartitionerClass(SubproblemKey.Partitioner.class);
+      jobTwo.setReducerClass(ReducerTwo.class);
+    }
+
+    if (binaryInput) {
+      jobTwo.setInputFormatClass(BinaryEdgeListInputFormat.class);
+      BinaryEdgeListInputFormat.addInputPath(jobTwo, new Path(inputPath));
+    } else if (fusedDeduplication) {
+      TextInputFormat.addInputPath(jobTwo, new Path(inputPath));
+    } else {
+      if (binaryIntermediate) {
+        jobTwo.setInputFormatClass(SequenceFileInputFormat.class);
+      }
+      TextInputFormat.addInputPath(jobTwo, new Path(tempPath, "mapreduce-one"));
+    }
+    if (binaryIntermediate) {
+      setSequenceFileOutput(jobTwo, compressIntermediate);
+    }
+    TextOutputFormat.setOutputPath(jobTwo, new Path(tempPath, "mapreduce-two"));
+    SkewReport.addNamedOutput(jobTwo);
+    if (sampler.isSampling()) {
+      MultipleOutputs.addNamedOutput(jobTwo, EDGE_TRIANGLES_NAMED_OUTPUT, SequenceFileOutputFormat.class,
+          LongPair.class, LongWritable.class);
+    }
+    if (vertexTrianglesPath != null) {
+      MultipleOutputs.addNamedOutput(jobTwo, VERTEX_TRIANGLES_NAMED_OUTPUT, SequenceFileOutputFormat.class,
+          LongWritable.class, LongPair.class);
+    }
+    if (trianglesPath != null) {
+      MultipleOutputs.addNamedOutput(jobTwo, TRIANGLES_NAMED_OUTPUT, TriangleListOutputFormat.class, LongTriple.class,
+          NullWritable.class);
+    }
 
     /* Job 3: Sum triangle counts */
 
@@ -283,21 +865,69 @@ public class TriangleTypePartition extends Configured implements Tool {
     jobThree.setOutputValueClass(LongWritable.class);
 
     jobThree.setJarByClass(TriangleTypePartition.class);
-    jobThree.setMapperClass(MapperThree.class);
+    jobThree.setMapperClass(binaryIntermediate ? BinaryMapperThree.class : MapperThree.class);
     jobThree.setReducerClass(ReducerThree.class);
 
-    TextInputFormat.addInputPath(jobThree, new Path("/user/rayandrew/temp/mapreduce-two"));
+    if (binaryIntermediate) {
+      jobThree.setInputFormatClass(SequenceFileInputFormat.class);
+    }
+    TextInputFormat.addInputPath(jobThree, new Path(tempPath, "mapreduce-two"));
     TextOutputFormat.setOutputPath(jobThree, new Path(outputPath));
 
     /* Execute jobs */
 
     long startTime = System.nanoTime();
 
-    int ret = jobOne.waitForCompletion(true) ? 0 : 1;
-    if (ret == 0)
-      ret = jobTwo.waitForCompletion(true) ? 0 : 1;
+    int ret = binaryInput || fusedDeduplication || ExecutedJob.run(jobOne, executedJobs) ? 0 : 1;
     if (ret == 0)
-      ret = jobThree.waitForCompletion(true) ? 0 : 1;
+      ret = ExecutedJob.run(jobTwo, executedJobs) ? 0 : 1;
+    if (ret == 0) {
+      SkewReport.print(System.out, new Path(tempPath, "mapreduce-two"), getConf(), partitioner);
+      if (trianglesPath != null) {
+        moveTriangles(new Path(tempPath, "mapreduce-two"), new Path(trianglesPath));
+        System.out.println("Listed " + jobTwo.getCounters().findCounter(TriangleCounter.LISTED_TRIANGLES).getValue()
+            + " triangles to " + trianglesPath);
+      }
+
+      if (sampler.isSampling()) {
+        long sharedEdgePairs = 0;
+        Path edgeTrianglesPath = new Path(new Path(tempPath, "mapreduce-two"), EDGE_TRIANGLES_BASE_OUTPUT_PATH + "-*");
+        // No edge file when the sample has no triangle
+        FileStatus[] edgeTriangleFiles = edgeTrianglesPath.getFileSystem(getConf()).globStatus(edgeTrianglesPath);
+        if (edgeTriangleFiles != null && edgeTriangleFiles.length > 0) {
+          Job jobVariance = varianceJob(edgeTrianglesPath);
+          ret = ExecutedJob.run(jobVariance, executedJobs) ? 0 : 1;
+          if (ret == 0) {
+            sharedEdgePairs = jobVariance.getCounters().findCounter(TriangleCounter.SHARED_EDGE_TRIANGLE_PAIRS)
+                .getValue();
+          }
+        }
+        if (ret == 0) {
+          long type1TriangleCount = jobTwo.getCounters().findCounter(TriangleCounter.TYPE_1_TRIANGLES).getValue()
+              / (partitionCount - 1);
+          long type2Or3TriangleCount = jobTwo.getCounters().findCounter(TriangleCounter.TYPE_2_OR_3_TRIANGLES)
+              .getValue();
+          writeResult(new Path(outputPath), Math.round(sampler.estimate(type1TriangleCount)),
+              Math.round(sampler.estimate(type2Or3TriangleCount)));
+          sampler.print(System.out, type1TriangleCount + type2Or3TriangleCount, sharedEdgePairs);
+          if (jobTwo.getCounters().findCounter(SubproblemCounter.SPILLED_SUBPROBLEMS).getValue() > 0) {
+            System.out.println("  Spilled subproblems have no per edge counts, the interval is too narrow");
+          }
+        }
+      } else if (counterAggregation) {
+        Counters counters = jobTwo.getCounters();
+        long type1TriangleCount = counters.findCounter(TriangleCounter.TYPE_1_TRIANGLES).getValue()
+            / (partitionCount - 1);
+        long type2Or3TriangleCount = counters.findCounter(TriangleCounter.TYPE_2_OR_3_TRIANGLES).getValue();
+        writeResult(new Path(outputPath), type1TriangleCount, type2Or3TriangleCount);
+      } else {
+        ret = ExecutedJob.run(jobThree, executedJobs) ? 0 : 1;
+      }
+    }
+    if (ret == 0 && vertexTrianglesPath != null) {
+      Job jobVertices = verticesJob(new Path(tempPath, "mapreduce-two"), new Path(vertexTrianglesPath));
+      ret = ExecutedJob.run(jobVertices, executedJobs) ? 0 : 1;
+    }
 
     long endTime = System.nanoTime();
 
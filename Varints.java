@@ -0,0 +1,87 @@
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * Variable length integers shared by the binary formats (BinaryEdgeList,
+ * VertexTriangleList and TriangleList): 7 bits per byte, least significant
+ * group first, with the high bit set on every byte but the last. Signed values
+ * are zig-zag encoded first so that small negative values stay short.
+ */
+public class Varints {
+
+  /**
+   * Write a non negative value.
+   *
+   * @param out   Where to write.
+   * @param value The value, taken as unsigned.
+   * @return The number of bytes written.
+   */
+  public static int writeVarLong(DataOutput out, long value) throws IOException {
+    int size = 1;
+    while ((value & ~0x7FL) != 0) {
+      out.writeByte((int) ((value & 0x7F) | 0x80));
+      value >>>= 7;
+      size++;
+    }
+    out.writeByte((int) value);
+    return size;
+  }
+
+  /**
+   * Read a value written by writeVarLong.
+   *
+   * @param in Buffer positioned at the value.
+   * @return The value.
+   */
+  public static long readVarLong(ByteBuffer in) {
+    long value = 0;
+    int shift = 0;
+    byte b;
+    do {
+      b = in.get();
+      value |= ((long) (b & 0x7F)) << shift;
+      shift += 7;
+    } while (b < 0);
+    return value;
+  }
+
+  /**
+   * Read a value written by writeVarLong.
+   *
+   * @param in Stream positioned at the value.
+   * @return The value.
+   */
+  public static long readVarLong(DataInput in) throws IOException {
+    return readVarLong(in, in.readUnsignedByte());
+  }
+
+  /**
+   * Read a value whose first byte was already read, as when checking for the
+   * end of a stream.
+   *
+   * @param in        Stream positioned after the first byte.
+   * @param firstByte The first byte, as an unsigned value.
+   * @return The value.
+   */
+  public static long readVarLong(DataInput in, int firstByte) throws IOException {
+    int b = firstByte;
+    long value = b & 0x7F;
+    int shift = 7;
+    while ((b & 0x80) != 0) {
+      b = in.readUnsignedByte();
+      value |= ((long) (b & 0x7F)) << shift;
+      shift += 7;
+    }
+    return value;
+  }
+
+  public static long zigZag(long value) {
+    return (value << 1) ^ (value >> 63);
+  }
+
+  public static long unZigZag(long value) {
+    return (value >>> 1) ^ -(value & 1);
+  }
+}
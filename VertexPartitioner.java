@@ -0,0 +1,100 @@
+import org.apache.hadoop.conf.Configuration;
+
+/**
+ * Assigns vertices to the p partitions of a Triangle Type Partition, either as
+ * vertex % p or by a seeded hash of the vertex. Hashing spreads structured ids,
+ * such as blocks of related vertices numbered together or multiples of small
+ * numbers, evenly over the partitions. The mappers, which pick the subproblems
+ * of an edge, and the reducers, which classify triangles by type, must use the
+ * same partitioner.
+ */
+public class VertexPartitioner {
+  public static final String HASH_CONFIG_KEY = "partitionHash";
+  public static final String DEFAULT_HASH = "modulo";
+  public static final String SEED_CONFIG_KEY = "partitionSeed";
+  public static final long DEFAULT_SEED = 0;
+
+  private final long p;
+  private final boolean hashed;
+  private final long seed;
+  private final long seedMix;
+
+  /**
+   * Partition by vertex % p.
+   *
+   * @param p Partition count.
+   */
+  public VertexPartitioner(long p) {
+    this(p, false, DEFAULT_SEED);
+  }
+
+  /**
+   * @param p      Partition count.
+   * @param hashed Whether to hash vertices instead of taking vertex % p.
+   * @param seed   Hash seed.
+   */
+  public VertexPartitioner(long p, boolean hashed, long seed) {
+    this.p = p;
+    this.hashed = hashed;
+    this.seed = seed;
+    this.seedMix = mix(seed + 0x9E3779B97F4A7C15L);
+  }
+
+  /**
+   * Parse a partitioner name, case insensitive.
+   *
+   * @param name "modulo" or "hash".
+   * @param seed Hash seed.
+   * @param p    Partition count.
+   * @return The partitioner.
+   */
+  public static VertexPartitioner forName(String name, long seed, long p) {
+    if ("modulo".equalsIgnoreCase(name)) {
+      return new VertexPartitioner(p);
+    } else if ("hash".equalsIgnoreCase(name)) {
+      return new VertexPartitioner(p, true, seed);
+    }
+    throw new IllegalArgumentException("Unknown partition hash: " + name);
+  }
+
+  /**
+   * The partitioner given by partitionHash and partitionSeed.
+   *
+   * @param conf Job configuration.
+   * @param p    Partition count.
+   * @return The partitioner.
+   */
+  public static VertexPartitioner fromConf(Configuration conf, long p) {
+    return forName(conf.get(HASH_CONFIG_KEY, DEFAULT_HASH), conf.getLong(SEED_CONFIG_KEY, DEFAULT_SEED), p);
+  }
+
+  public long getPartitionCount() {
+    return p;
+  }
+
+  public int partition(long vertex) {
+    if (hashed) {
+      return (int) Long.remainderUnsigned(mix(vertex ^ seedMix), p);
+    }
+    // Keeps negative ids in [0, p), as the hash does
+    return (int) Math.floorMod(vertex, p);
+  }
+
+  /**
+   * A bijective 64 bit mixing function (the splitmix64 finalizer), whose
+   * output bits all depend on every input bit.
+   *
+   * @param x Value to mix.
+   * @return The mixed value.
+   */
+  public static long mix(long x) {
+    x = (x ^ (x >>> 30)) * 0xBF58476D1CE4E5B9L;
+    x = (x ^ (x >>> 27)) * 0x94D049BB133111EBL;
+    return x ^ (x >>> 31);
+  }
+
+  @Override
+  public String toString() {
+    return hashed ? "hash (seed " + seed + ")" : "modulo";
+  }
+}
@@ -0,0 +1,112 @@
+import java.io.*;
+
+/**
+ * Packed binary list of per vertex triangle counts, written by
+ * TriangleTypePartition when vertexTrianglesPath is set.
+ *
+ * A file holds vertices in ascending order, laid out as:
+ *
+ * - header (8 bytes): magic, version (ints)
+ *
+ * - records: the vertex as a varint delta to the previous one (zig-zag encoded
+ * for the first), then degree and triangle count as varints and the local
+ * clustering coefficient as a float
+ *
+ * The records run to the end of the file.
+ */
+public class VertexTriangleList {
+  public static final int MAGIC = 0x54545056; // "TTPV"
+  public static final int VERSION = 1;
+
+  public static final int HEADER_SIZE = 8;
+
+  /**
+   * Local clustering coefficient: the share of a vertex's neighbor pairs that
+   * are adjacent.
+   *
+   * @param degree        Degree of the vertex.
+   * @param triangleCount Triangles of the vertex.
+   * @return The coefficient, 0 below degree 2.
+   */
+  public static double clusteringCoefficient(long degree, long triangleCount) {
+    return degree < 2 ? 0 : 2.0 * triangleCount / ((double) degree * (degree - 1));
+  }
+
+  /** Writes vertices, which must be appended in ascending order. */
+  public static class Writer implements Closeable {
+    private final DataOutputStream out;
+    private long vertexCount = 0;
+    private long previousVertex = 0;
+
+    public Writer(OutputStream out) throws IOException {
+      this.out = new DataOutputStream(new BufferedOutputStream(out, 1 << 16));
+      this.out.writeInt(MAGIC);
+      this.out.writeInt(VERSION);
+    }
+
+    public void append(long vertex, long degree, long triangleCount) throws IOException {
+      if (vertexCount > 0 && vertex <= previousVertex) {
+        throw new IllegalArgumentException("Vertices must be appended in ascending order without duplicates");
+      }
+
+      Varints.writeVarLong(out, vertexCount == 0 ? Varints.zigZag(vertex) : vertex - previousVertex);
+      Varints.writeVarLong(out, degree);
+      Varints.writeVarLong(out, triangleCount);
+      out.writeFloat((float) clusteringCoefficient(degree, triangleCount));
+      previousVertex = vertex;
+      vertexCount++;
+    }
+
+    public long getVertexCount() {
+      return vertexCount;
+    }
+
+    @Override
+    public void close() throws IOException {
+      out.close();
+    }
+  }
+
+  /** Reads the records of a file in order. */
+  public static class Reader implements Closeable {
+    public long vertex = 0;
+    public long degree = 0;
+    public long triangleCount = 0;
+    public float clusteringCoefficient = 0;
+
+    private final DataInputStream in;
+    private boolean first = true;
+
+    public Reader(InputStream in) throws IOException {
+      this.in = new DataInputStream(new BufferedInputStream(in, 1 << 16));
+      if (this.in.readInt() != MAGIC || this.in.readInt() != VERSION) {
+        throw new IOException("Not a vertex triangle list");
+      }
+    }
+
+    /**
+     * Read the next record into the public fields.
+     *
+     * @return <tt>false</tt> at the end of the file.
+     */
+    public boolean next() throws IOException {
+      int b = in.read();
+      if (b < 0) {
+        return false;
+      }
+
+      long delta = Varints.readVarLong(in, b);
+      vertex = first ? Varints.unZigZag(delta) : vertex + delta;
+      first = false;
+      degree = Varints.readVarLong(in);
+      triangleCount = Varints.readVarLong(in);
+      clusteringCoefficient = in.readFloat();
+      return true;
+    }
+
+    @Override
+    public void close() throws IOException {
+      in.close();
+    }
+  }
+}
@@ -0,0 +1,36 @@
+import java.io.IOException;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.io.LongWritable;
+import org.apache.hadoop.mapreduce.RecordWriter;
+import org.apache.hadoop.mapreduce.TaskAttemptContext;
+import org.apache.hadoop.mapreduce.lib.output.FileOutputFormat;
+
+/**
+ * Writes (vertex, (degree, triangle count)) records as a VertexTriangleList
+ * file per task. Vertices must arrive in ascending order, as reducer keys do.
+ */
+public class VertexTriangleListOutputFormat extends FileOutputFormat<LongWritable, LongPair> {
+
+  @Override
+  public RecordWriter<LongWritable, LongPair> getRecordWriter(TaskAttemptContext context) throws IOException {
+    Configuration conf = context.getConfiguration();
+    Path file = getDefaultWorkFile(context, "");
+    FileSystem fs = file.getFileSystem(conf);
+    final VertexTriangleList.Writer writer = new VertexTriangleList.Writer(fs.create(file, false));
+
+    return new RecordWriter<LongWritable, LongPair>() {
+      @Override
+      public void write(LongWritable key, LongPair value) throws IOException {
+        writer.append(key.get(), value.first, value.second);
+      }
+
+      @Override
+      public void close(TaskAttemptContext context) throws IOException {
+        writer.close();
+      }
+    };
+  }
+}
@@ -0,0 +1,52 @@
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * The build, sort and intersect kernel TriangleTypePartition.ReducerTwo runs
+ * on the subgraph of every subproblem.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CompactForwardBenchmark {
+  @Param({ "uniform", "powerlaw" })
+  String kind;
+
+  @Param({ "20000" })
+  int vertexCount;
+
+  @Param({ "200000" })
+  int edgeCount;
+
+  @Param({ "64" })
+  long partitionCount;
+
+  @Param({ "adaptive", "merge", "galloping", "block" })
+  String intersection;
+
+  long[] edges;
+  CompactForward graph;
+
+  @Setup
+  public void setup() {
+    edges = SyntheticGraphs.generate(kind, vertexCount, edgeCount, 42);
+    graph = new CompactForward(edges.length / 2);
+    graph.setIntersection(Intersection.forName(intersection));
+  }
+
+  @Benchmark
+  public long buildAndCount() {
+    for (int e = 0; e < edges.length; e += 2) {
+      graph.addEdge(edges[e], edges[e + 1]);
+    }
+    graph.build();
+    graph.countTriangles(partitionCount);
+    long triangleCount = graph.getType1TriangleCount() + graph.getType2Or3TriangleCount();
+    graph.clear();
+    return triangleCount;
+  }
+}
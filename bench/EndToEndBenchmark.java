@@ -0,0 +1,189 @@
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.*;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.mapreduce.Job;
+import org.apache.hadoop.mapreduce.TaskCounter;
+import org.apache.hadoop.util.Tool;
+import org.apache.hadoop.util.ToolRunner;
+
+/**
+ * Runs TriangleCount, GraphPartition and TriangleTypePartition on a seeded
+ * synthetic graph under Hadoop's LocalJobRunner and reports, per job, the wall
+ * time, shuffle bytes and spilled records, then checks every triangle count
+ * against an in-memory reference.
+ *
+ * Usage: EndToEndBenchmark kind vertexCount edgeCount partitionCounts [seed]
+ * where kind is uniform, powerlaw, rmat or clustered and partitionCounts is a
+ * comma separated list, used by GraphPartition and TriangleTypePartition.
+ * Exits with 1 if any count differs from the reference.
+ */
+public class EndToEndBenchmark {
+  public static final long DEFAULT_SEED = 42;
+
+  public static void main(String[] args) throws Exception {
+    String kind = args[0];
+    int vertexCount = Integer.parseInt(args[1]);
+    int edgeCount = Integer.parseInt(args[2]);
+    String[] partitionCounts = args[3].split(",");
+    long seed = args.length > 4 ? Long.parseLong(args[4]) : DEFAULT_SEED;
+
+    File workDirectory = Files.createTempDirectory("triangle-bench").toFile();
+    File input = new File(workDirectory, "input");
+    input.mkdirs();
+
+    long[] edges = SyntheticGraphs.generate(kind, vertexCount, edgeCount, seed);
+    try (PrintWriter writer = new PrintWriter(new OutputStreamWriter(
+        new FileOutputStream(new File(input, "edges.txt")), StandardCharsets.UTF_8))) {
+      for (int e = 0; e < edges.length; e += 2) {
+        writer.println(edges[e] + " " + edges[e + 1]);
+      }
+    }
+    long reference = countTriangles(edges);
+
+    StringBuilder report = new StringBuilder();
+    report.append(String.format("Graph %s, %d vertices, %d edges, seed %d, reference triangle count %d%n", kind,
+        vertexCount, edges.length / 2, seed, reference));
+    report.append(String.format("%-22s %5s %-18s %10s %14s %14s%n", "Algorithm", "p", "Job", "Wall (ms)",
+        "Shuffle bytes", "Spilled"));
+
+    boolean matches = run(new TriangleCount(), "TriangleCount", null, input, workDirectory, reference, report);
+    for (String p : partitionCounts) {
+      matches &= run(new GraphPartition(), "GraphPartition", p, input, workDirectory, reference, report);
+      matches &= run(new TriangleTypePartition(), "TriangleTypePartition", p, input, workDirectory, reference,
+          report);
+    }
+
+    System.out.println();
+    System.out.print(report);
+    System.out.println("Work directory: " + workDirectory);
+    System.exit(matches ? 0 : 1);
+  }
+
+  // Runs one algorithm, appends its jobs and total to the report and returns
+  // whether its count matches the reference
+  private static boolean run(Tool tool, String name, String p, File input, File workDirectory, long reference,
+      StringBuilder report) throws Exception {
+    String runName = p == null ? name : name + "-" + p;
+    File output = new File(workDirectory, "output-" + runName);
+
+    Configuration conf = new Configuration();
+    conf.set("mapreduce.framework.name", "local");
+    conf.set("fs.defaultFS", "file:///");
+    conf.set(TriangleTypePartition.TEMP_PATH_CONFIG_KEY, new File(workDirectory, "temp-" + runName).getPath());
+
+    List<String> args = new ArrayList<String>(Arrays.asList(input.getPath(), output.getPath()));
+    if (p != null) {
+      args.add(p);
+    }
+
+    long startTime = System.nanoTime();
+    int ret = ToolRunner.run(conf, tool, args.toArray(new String[args.size()]));
+    long wallTime = (System.nanoTime() - startTime) / 1000000;
+
+    long shuffleBytes = 0;
+    long spilledRecords = 0;
+    for (ExecutedJob executedJob : executedJobs(tool)) {
+      Job job = executedJob.job;
+      long jobShuffleBytes = job.getCounters().findCounter(TaskCounter.REDUCE_SHUFFLE_BYTES).getValue();
+      long jobSpilledRecords = job.getCounters().findCounter(TaskCounter.SPILLED_RECORDS).getValue();
+      report.append(String.format("%-22s %5s %-18s %10d %14d %14d%n", name, p == null ? "-" : p, job.getJobName(),
+          executedJob.wallClockTimeMillis, jobShuffleBytes, jobSpilledRecords));
+      shuffleBytes += jobShuffleBytes;
+      spilledRecords += jobSpilledRecords;
+    }
+
+    long count = ret == 0 ? readCount(output) : -1;
+    boolean matches = count == reference;
+    report.append(String.format("%-22s %5s %-18s %10d %14d %14d  count %d %s%n%n", name, p == null ? "-" : p,
+        "total", wallTime, shuffleBytes, spilledRecords, count, matches ? "OK" : "MISMATCH"));
+    return matches;
+  }
+
+  private static List<ExecutedJob> executedJobs(Tool tool) {
+    if (tool instanceof TriangleCount) {
+      return ((TriangleCount) tool).getExecutedJobs();
+    } else if (tool instanceof GraphPartition) {
+      return ((GraphPartition) tool).getExecutedJobs();
+    }
+    return ((TriangleTypePartition) tool).getExecutedJobs();
+  }
+
+  // Sums the last number of every output line, as run.sh does
+  private static long readCount(File output) throws IOException {
+    double sum = 0;
+    for (File part : output.listFiles()) {
+      if (!part.getName().startsWith("part-")) {
+        continue;
+      }
+      for (String line : Files.readAllLines(part.toPath(), StandardCharsets.UTF_8)) {
+        String[] fields = line.trim().split("\\s+");
+        if (!fields[fields.length - 1].isEmpty()) {
+          sum += Double.parseDouble(fields[fields.length - 1]);
+        }
+      }
+    }
+    return Math.round(sum);
+  }
+
+  /**
+   * Reference triangle count: for every edge (u, v) with u < v, the common
+   * neighbors w > v, from sorted adjacency arrays.
+   *
+   * @param edges Unique edges (first, second), first < second.
+   * @return The triangle count.
+   */
+  static long countTriangles(long[] edges) {
+    Map<Long, Integer> indices = new HashMap<Long, Integer>();
+    for (long vertex : edges) {
+      if (!indices.containsKey(vertex)) {
+        indices.put(vertex, indices.size());
+      }
+    }
+
+    int n = indices.size();
+    int[] degrees = new int[n];
+    for (long vertex : edges) {
+      degrees[indices.get(vertex)]++;
+    }
+    long[][] adjacency = new long[n][];
+    for (int i = 0; i < n; i++) {
+      adjacency[i] = new long[degrees[i]];
+      degrees[i] = 0;
+    }
+    for (int e = 0; e < edges.length; e += 2) {
+      int u = indices.get(edges[e]);
+      int v = indices.get(edges[e + 1]);
+      adjacency[u][degrees[u]++] = edges[e + 1];
+      adjacency[v][degrees[v]++] = edges[e];
+    }
+    for (long[] neighbors : adjacency) {
+      Arrays.sort(neighbors);
+    }
+
+    long count = 0;
+    for (int e = 0; e < edges.length; e += 2) {
+      long v = edges[e + 1];
+      long[] uNeighbors = adjacency[indices.get(edges[e])];
+      long[] vNeighbors = adjacency[indices.get(v)];
+      int i = 0;
+      int j = 0;
+      while (i < uNeighbors.length && j < vNeighbors.length) {
+        if (uNeighbors[i] < vNeighbors[j]) {
+          i++;
+        } else if (uNeighbors[i] > vNeighbors[j]) {
+          j++;
+        } else {
+          if (uNeighbors[i] > v) {
+            count++;
+          }
+          i++;
+          j++;
+        }
+      }
+    }
+    return count;
+  }
+}
@@ -0,0 +1,43 @@
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * Graph.countTrianglesWithPartition, the per partition kernel of
+ * GraphPartition, on a graph built once per trial.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class GraphBenchmark {
+  @Param({ "uniform", "powerlaw" })
+  String kind;
+
+  @Param({ "20000" })
+  int vertexCount;
+
+  @Param({ "200000" })
+  int edgeCount;
+
+  @Param({ "64" })
+  int partitionCount;
+
+  Graph graph;
+
+  @Setup
+  public void setup() {
+    long[] edges = SyntheticGraphs.generate(kind, vertexCount, edgeCount, 42);
+    graph = new Graph();
+    for (int e = 0; e < edges.length; e += 2) {
+      graph.addEdge(edges[e], edges[e + 1]);
+    }
+  }
+
+  @Benchmark
+  public double countTrianglesWithPartition() {
+    return graph.countTrianglesWithPartition(partitionCount);
+  }
+}
@@ -0,0 +1,75 @@
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.hadoop.io.DataInputBuffer;
+import org.apache.hadoop.io.DataOutputBuffer;
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * LongPair serialization and raw comparison, as run for every intermediate
+ * record of the shuffle. Each operation handles one record.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class LongPairBenchmark {
+  static final int RECORD_COUNT = 1024;
+  static final int RECORD_SIZE = 16;
+
+  LongPair[] pairs = new LongPair[RECORD_COUNT];
+  LongPair pair = new LongPair();
+  byte[] serialized;
+  DataOutputBuffer out = new DataOutputBuffer(RECORD_COUNT * RECORD_SIZE);
+  DataInputBuffer in = new DataInputBuffer();
+  LongPair.Comparator comparator = new LongPair.Comparator();
+
+  @Setup
+  public void setup() throws IOException {
+    Random random = new Random(42);
+    for (int i = 0; i < RECORD_COUNT; i++) {
+      // Shared first values, as for the edges of one vertex
+      pairs[i] = new LongPair(random.nextInt(RECORD_COUNT / 8), random.nextInt(Integer.MAX_VALUE));
+      pairs[i].write(out);
+    }
+    serialized = Arrays.copyOf(out.getData(), out.getLength());
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(RECORD_COUNT)
+  public int write() throws IOException {
+    out.reset();
+    for (int i = 0; i < RECORD_COUNT; i++) {
+      pairs[i].write(out);
+    }
+    return out.getLength();
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(RECORD_COUNT)
+  public long readFields() throws IOException {
+    in.reset(serialized, serialized.length);
+    long sum = 0;
+    for (int i = 0; i < RECORD_COUNT; i++) {
+      pair.readFields(in);
+      sum += pair.first + pair.second;
+    }
+    return sum;
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(RECORD_COUNT)
+  public int rawCompare() {
+    int sum = 0;
+    for (int i = 0; i < RECORD_COUNT; i++) {
+      int next = (i + 1) % RECORD_COUNT;
+      sum += comparator.compare(serialized, i * RECORD_SIZE, RECORD_SIZE, serialized, next * RECORD_SIZE,
+          RECORD_SIZE);
+    }
+    return sum;
+  }
+}
@@ -0,0 +1,127 @@
+import java.util.*;
+
+/**
+ * Checks Subproblems against the nested scan over all O(p^2) pairs and O(p^3)
+ * triples of partitions it replaced, for every pair of partitions of every
+ * partition count up to a maximum: enumerate() must list the same subproblems
+ * in the same order, id() must number the scanned subproblems one to one from 0
+ * to subproblemCount() - 1, pairs first, and partitions() must invert id().
+ *
+ * Usage: SubproblemsCheck [maxPartitionCount], 64 by default. Exits with 1 on
+ * any mismatch.
+ */
+public class SubproblemsCheck {
+  public static final int DEFAULT_MAX_PARTITION_COUNT = 64;
+
+  public static void main(String[] args) {
+    int maxPartitionCount = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_MAX_PARTITION_COUNT;
+    int mismatchCount = 0;
+
+    for (long p = 2; p <= maxPartitionCount; p++) {
+      List<long[]> scanned = scan(p);
+      if (scanned.size() != Subproblems.subproblemCount(p)) {
+        mismatchCount += report("p = " + p + ": subproblemCount " + Subproblems.subproblemCount(p) + ", scanned "
+            + scanned.size());
+      }
+
+      // Ids are given in colexicographic order, pairs first, so any order of
+      // the scanned subproblems works as long as they map onto the ids
+      boolean[] taken = new boolean[scanned.size()];
+      long[] partitions = new long[3];
+      for (long[] s : scanned) {
+        int id = Subproblems.id(s[0], s[1], s[2], p);
+        boolean pair = s[2] == Subproblems.NO_PARTITION;
+        boolean valid = id >= 0 && id < taken.length && !taken[id] && Subproblems.isPair(id, p) == pair;
+        if (valid) {
+          taken[id] = true;
+          Subproblems.partitions(id, p, partitions);
+          valid = Arrays.equals(s, partitions);
+        }
+        if (!valid) {
+          mismatchCount += report("p = " + p + ": subproblem " + Arrays.toString(s) + " has id " + id
+              + ", out of range, taken, of the wrong kind or not inverted by partitions()");
+        }
+      }
+
+      long[] out = new long[3 * Subproblems.maxSubproblemCount(p)];
+      for (long x = 0; x < p; x++) {
+        for (long y = 0; y < p; y++) {
+          List<long[]> expected = nestedScan(x, y, p);
+          int count = Subproblems.enumerate(x, y, p, out);
+          boolean same = count == expected.size();
+          for (int i = 0; same && i < count; i++) {
+            same = Arrays.equals(expected.get(i), Arrays.copyOfRange(out, 3 * i, 3 * i + 3));
+          }
+          if (!same) {
+            mismatchCount += report("p = " + p + ": edge of partitions " + x + " and " + y + " enumerated "
+                + Arrays.toString(Arrays.copyOf(out, 3 * count)) + ", scanned " + expected.size() + " subproblems");
+          }
+        }
+      }
+    }
+
+    System.out.println(mismatchCount == 0 ? "Subproblems match the nested scan for p = 2.." + maxPartitionCount
+        : mismatchCount + " mismatches");
+    System.exit(mismatchCount == 0 ? 0 : 1);
+  }
+
+  // Every pair then every triple of partitions, in ascending lexicographic
+  // order, as the nested loops visited them
+  private static List<long[]> scan(long p) {
+    List<long[]> subproblems = new ArrayList<long[]>();
+    for (long a = 0; a < p - 1; a++) {
+      for (long b = a + 1; b < p; b++) {
+        subproblems.add(new long[] { a, b, Subproblems.NO_PARTITION });
+      }
+    }
+    for (long a = 0; a < p - 2; a++) {
+      for (long b = a + 1; b < p - 1; b++) {
+        for (long c = b + 1; c < p; c++) {
+          subproblems.add(new long[] { a, b, c });
+        }
+      }
+    }
+    return subproblems;
+  }
+
+  // The loops of the old TriangleTypePartition.emitSubproblems, conditions
+  // unchanged, for an edge whose ends fall in the given partitions
+  private static List<long[]> nestedScan(long vertexPartition1, long vertexPartition2, long p) {
+    List<long[]> subproblems = new ArrayList<long[]>();
+    for (long a = 0; a < p - 1; a++) {
+      for (long b = a + 1; b < p; b++) {
+        if (((vertexPartition1 == a) && (vertexPartition2 == b))
+            || ((vertexPartition1 == b) && (vertexPartition2 == a))
+            || ((vertexPartition1 == a) && (vertexPartition2 == a))
+            || ((vertexPartition1 == b) && (vertexPartition2 == b))) {
+          subproblems.add(new long[] { a, b, Subproblems.NO_PARTITION });
+        }
+      }
+    }
+    if (vertexPartition1 != vertexPartition2) {
+      for (long a = 0; a < p - 2; a++) {
+        for (long b = a + 1; b < p - 1; b++) {
+          for (long c = b + 1; c < p; c++) {
+            if (((vertexPartition1 == a) && (vertexPartition2 == a))
+                || ((vertexPartition1 == a) && (vertexPartition2 == b))
+                || ((vertexPartition1 == a) && (vertexPartition2 == c))
+                || ((vertexPartition1 == b) && (vertexPartition2 == a))
+                || ((vertexPartition1 == b) && (vertexPartition2 == b))
+                || ((vertexPartition1 == b) && (vertexPartition2 == c))
+                || ((vertexPartition1 == c) && (vertexPartition2 == a))
+                || ((vertexPartition1 == c) && (vertexPartition2 == b))
+                || ((vertexPartition1 == c) && (vertexPartition2 == c))) {
+              subproblems.add(new long[] { a, b, c });
+            }
+          }
+        }
+      }
+    }
+    return subproblems;
+  }
+
+  private static int report(String mismatch) {
+    System.out.println(mismatch);
+    return 1;
+  }
+}
@@ -0,0 +1,194 @@
+import java.util.*;
+
+/**
+ * Seeded synthetic graph generators for the benchmarks.
+ *
+ * Every generator returns unique undirected edges without self loops as an
+ * interleaved array of (first, second) with first < second, in ascending
+ * order. Vertex ids are randomly permuted, so high degree vertices do not all
+ * land in the same partition.
+ */
+public class SyntheticGraphs {
+  // Sampling stops after this many rounds without reaching the edge count
+  private static final int MAX_ROUNDS = 64;
+
+  // R-MAT quadrant probabilities (Graph500 parameters), d = 1 - a - b - c
+  private static final double RMAT_A = 0.57;
+  private static final double RMAT_B = 0.19;
+  private static final double RMAT_C = 0.19;
+
+  // Clustered graphs draw this fraction of their edges inside communities
+  private static final int COMMUNITY_SIZE = 16;
+  private static final double COMMUNITY_EDGE_FRACTION = 0.8;
+
+  // Draws the two ends of an edge as indices in [0, vertexCount), packed as
+  // (u << 32 | v), or -1 to reject the draw
+  private interface EdgeSampler {
+    long draw(Random random);
+  }
+
+  /**
+   * Generate a graph by name.
+   *
+   * @param kind        "uniform", "powerlaw", "rmat" or "clustered".
+   * @param vertexCount Number of vertices.
+   * @param edgeCount   Number of edges wanted, fewer if the graph saturates.
+   * @param seed        Random seed.
+   * @return The edges.
+   */
+  public static long[] generate(String kind, int vertexCount, int edgeCount, long seed) {
+    if ("uniform".equals(kind)) {
+      return uniform(vertexCount, edgeCount, seed);
+    } else if ("powerlaw".equals(kind)) {
+      return powerLaw(vertexCount, edgeCount, 2.1, seed);
+    } else if ("rmat".equals(kind)) {
+      return rmat(vertexCount, edgeCount, seed);
+    } else if ("clustered".equals(kind)) {
+      return clustered(vertexCount, edgeCount, seed);
+    }
+    throw new IllegalArgumentException("Unknown graph kind: " + kind);
+  }
+
+  /** Erdos-Renyi G(n, m): edges drawn uniformly at random. */
+  public static long[] uniform(final int vertexCount, int edgeCount, long seed) {
+    return sample(vertexCount, edgeCount, new EdgeSampler() {
+      public long draw(Random random) {
+        return pack(random.nextInt(vertexCount), random.nextInt(vertexCount));
+      }
+    }, new Random(seed));
+  }
+
+  /**
+   * Chung-Lu graph with a power-law degree distribution: the ends of an edge
+   * are drawn with probability proportional to a weight (i + 1)^(-1 / (exponent
+   * - 1)), which gives degree exponent about exponent.
+   */
+  public static long[] powerLaw(final int vertexCount, int edgeCount, double exponent, long seed) {
+    final double[] cumulativeWeights = new double[vertexCount];
+    double total = 0;
+    for (int i = 0; i < vertexCount; i++) {
+      total += Math.pow(i + 1, -1.0 / (exponent - 1));
+      cumulativeWeights[i] = total;
+    }
+    return sample(vertexCount, edgeCount, new EdgeSampler() {
+      public long draw(Random random) {
+        return pack(weighted(random), weighted(random));
+      }
+
+      private int weighted(Random random) {
+        int index = Arrays.binarySearch(cumulativeWeights, random.nextDouble() * cumulativeWeights[vertexCount - 1]);
+        return Math.min(index < 0 ? -index - 1 : index, vertexCount - 1);
+      }
+    }, new Random(seed));
+  }
+
+  /**
+   * R-MAT graph (Chakrabarti et al.): each edge picks one quadrant of the
+   * adjacency matrix per bit of the vertex index, giving a skewed, self similar
+   * degree distribution.
+   */
+  public static long[] rmat(final int vertexCount, int edgeCount, long seed) {
+    final int bits = 32 - Integer.numberOfLeadingZeros(Math.max(vertexCount - 1, 1));
+    return sample(vertexCount, edgeCount, new EdgeSampler() {
+      public long draw(Random random) {
+        int u = 0;
+        int v = 0;
+        for (int bit = 0; bit < bits; bit++) {
+          double r = random.nextDouble();
+          u <<= 1;
+          v <<= 1;
+          if (r < RMAT_A) {
+            // Top left quadrant
+          } else if (r < RMAT_A + RMAT_B) {
+            v |= 1;
+          } else if (r < RMAT_A + RMAT_B + RMAT_C) {
+            u |= 1;
+          } else {
+            u |= 1;
+            v |= 1;
+          }
+        }
+        return u < vertexCount && v < vertexCount ? pack(u, v) : -1;
+      }
+    }, new Random(seed));
+  }
+
+  /**
+   * Graph with many triangles: most edges join two vertices of the same small
+   * community, the others are drawn uniformly.
+   */
+  public static long[] clustered(final int vertexCount, int edgeCount, long seed) {
+    final int communityCount = (vertexCount + COMMUNITY_SIZE - 1) / COMMUNITY_SIZE;
+    return sample(vertexCount, edgeCount, new EdgeSampler() {
+      public long draw(Random random) {
+        if (random.nextDouble() >= COMMUNITY_EDGE_FRACTION) {
+          return pack(random.nextInt(vertexCount), random.nextInt(vertexCount));
+        }
+        int community = random.nextInt(communityCount) * COMMUNITY_SIZE;
+        int u = community + random.nextInt(COMMUNITY_SIZE);
+        int v = community + random.nextInt(COMMUNITY_SIZE);
+        return u < vertexCount && v < vertexCount ? pack(u, v) : -1;
+      }
+    }, new Random(seed));
+  }
+
+  // Draws edges until edgeCount unique ones exist
+  private static long[] sample(int vertexCount, int edgeCount, EdgeSampler sampler, Random random) {
+    int[] ids = permutation(vertexCount, random);
+    long[] packed = new long[edgeCount];
+    int count = 0;
+    for (int round = 0; round < MAX_ROUNDS && count < edgeCount; round++) {
+      while (count < edgeCount) {
+        long edge = sampler.draw(random);
+        if (edge < 0) {
+          continue;
+        }
+        int u = ids[(int) (edge >>> 32)];
+        int v = ids[(int) edge];
+        if (u != v) {
+          packed[count++] = pack(Math.min(u, v), Math.max(u, v));
+        }
+      }
+      count = sortUnique(packed, count);
+    }
+    return unpack(packed, count);
+  }
+
+  private static long pack(int u, int v) {
+    return ((long) u << 32) | v;
+  }
+
+  static int[] permutation(int n, Random random) {
+    int[] ids = new int[n];
+    for (int i = 0; i < n; i++) {
+      ids[i] = i;
+    }
+    for (int i = n - 1; i > 0; i--) {
+      int j = random.nextInt(i + 1);
+      int swap = ids[i];
+      ids[i] = ids[j];
+      ids[j] = swap;
+    }
+    return ids;
+  }
+
+  static int sortUnique(long[] packed, int count) {
+    Arrays.sort(packed, 0, count);
+    int unique = 0;
+    for (int i = 0; i < count; i++) {
+      if (unique == 0 || packed[unique - 1] != packed[i]) {
+        packed[unique++] = packed[i];
+      }
+    }
+    return unique;
+  }
+
+  static long[] unpack(long[] packed, int count) {
+    long[] edges = new long[2 * count];
+    for (int e = 0; e < count; e++) {
+      edges[2 * e] = packed[e] >>> 32;
+      edges[2 * e + 1] = packed[e] & 0xFFFFFFFFL;
+    }
+    return edges;
+  }
+}
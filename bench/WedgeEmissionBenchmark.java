@@ -0,0 +1,136 @@
+import java.io.IOException;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.io.DataInputBuffer;
+import org.apache.hadoop.io.NullWritable;
+import org.apache.hadoop.mapred.RawKeyValueIterator;
+import org.apache.hadoop.mapreduce.*;
+import org.apache.hadoop.mapreduce.counters.GenericCounter;
+import org.apache.hadoop.mapreduce.lib.reduce.WrappedReducer;
+import org.apache.hadoop.mapreduce.task.ReduceContextImpl;
+import org.apache.hadoop.mapreduce.task.TaskAttemptContextImpl;
+import org.apache.hadoop.util.Progress;
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * TriangleCount.ReducerOne, which orients the edges of a vertex and emits the
+ * pairs of its higher ranked neighbors, called for every vertex of a graph.
+ * Output records go to a RecordWriter that only counts them.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class WedgeEmissionBenchmark {
+  @Param({ "uniform", "powerlaw" })
+  String kind;
+
+  @Param({ "20000" })
+  int vertexCount;
+
+  @Param({ "200000" })
+  int edgeCount;
+
+  // Reducer input: key and (neighbor, neighbor degree) values of every vertex
+  LongPair[] keys;
+  List<List<LongPair>> values;
+
+  TriangleCount.ReducerOne reducer;
+  Reducer<LongPair, LongPair, LongTriple, NullWritable>.Context context;
+  CountingRecordWriter writer = new CountingRecordWriter();
+
+  @Setup
+  public void setup() throws Exception {
+    long[] edges = SyntheticGraphs.generate(kind, vertexCount, edgeCount, 42);
+
+    Map<Long, List<Long>> adjacency = new TreeMap<Long, List<Long>>();
+    for (int e = 0; e < edges.length; e += 2) {
+      addNeighbor(adjacency, edges[e], edges[e + 1]);
+      addNeighbor(adjacency, edges[e + 1], edges[e]);
+    }
+    keys = new LongPair[adjacency.size()];
+    values = new ArrayList<List<LongPair>>(adjacency.size());
+    int v = 0;
+    for (Map.Entry<Long, List<Long>> entry : adjacency.entrySet()) {
+      keys[v] = new LongPair(entry.getKey(), TriangleCount.NO_BLOCK);
+      List<LongPair> neighborDegrees = new ArrayList<LongPair>(entry.getValue().size());
+      for (long neighbor : entry.getValue()) {
+        neighborDegrees.add(new LongPair(neighbor, adjacency.get(neighbor).size()));
+      }
+      values.add(neighborDegrees);
+      v++;
+    }
+
+    context = reducerContext(new Configuration(), writer);
+    reducer = new TriangleCount.ReducerOne();
+    reducer.setup(context);
+  }
+
+  private static void addNeighbor(Map<Long, List<Long>> adjacency, long vertex, long neighbor) {
+    List<Long> neighbors = adjacency.get(vertex);
+    if (neighbors == null) {
+      neighbors = new ArrayList<Long>();
+      adjacency.put(vertex, neighbors);
+    }
+    neighbors.add(neighbor);
+  }
+
+  @Benchmark
+  public long reduceAllVertices() throws IOException, InterruptedException {
+    writer.count = 0;
+    for (int v = 0; v < keys.length; v++) {
+      reducer.reduce(keys[v], values.get(v), context);
+    }
+    return writer.count;
+  }
+
+  static class CountingRecordWriter extends RecordWriter<LongTriple, NullWritable> {
+    long count = 0;
+
+    @Override
+    public void write(LongTriple key, NullWritable value) {
+      count++;
+    }
+
+    @Override
+    public void close(TaskAttemptContext context) {
+    }
+  }
+
+  // A standalone reducer context writing to the given writer, whose own input
+  // is empty since reduce is called directly
+  static <KEYIN, VALUEIN, KEYOUT, VALUEOUT> Reducer<KEYIN, VALUEIN, KEYOUT, VALUEOUT>.Context reducerContext(
+      Configuration conf, RecordWriter<KEYOUT, VALUEOUT> writer) throws IOException, InterruptedException {
+    RawKeyValueIterator emptyInput = new RawKeyValueIterator() {
+      public DataInputBuffer getKey() {
+        return null;
+      }
+
+      public DataInputBuffer getValue() {
+        return null;
+      }
+
+      public boolean next() {
+        return false;
+      }
+
+      public void close() {
+      }
+
+      public Progress getProgress() {
+        return new Progress();
+      }
+    };
+
+    @SuppressWarnings("unchecked")
+    ReduceContext<KEYIN, VALUEIN, KEYOUT, VALUEOUT> reduceContext = new ReduceContextImpl<KEYIN, VALUEIN, KEYOUT, VALUEOUT>(
+        conf, new TaskAttemptID(), emptyInput, new GenericCounter(), new GenericCounter(), writer, null,
+        new TaskAttemptContextImpl.DummyReporter(), null, (Class<KEYIN>) (Class<?>) LongPair.class,
+        (Class<VALUEIN>) (Class<?>) LongPair.class);
+    return new WrappedReducer<KEYIN, VALUEIN, KEYOUT, VALUEOUT>().getReducerContext(reduceContext);
+  }
+}
@@ -0,0 +1,37 @@
+#!/bin/bash
+
+# JMH microbenchmarks of the counting kernels and Writables, reporting ops/s and
+# the allocation rate (GC profiler). Arguments go to JMH, for example
+#   ./bench.sh CompactForward -p kind=powerlaw -p edgeCount=1000000
+#   ./bench.sh LongPair -f 3
+# Set HADOOP_CP to use a Hadoop classpath other than $(hadoop classpath)
+
+cd "$(dirname "$0")"
+
+JMH_VERSION=1.37
+JARS="org/openjdk/jmh/jmh-core/$JMH_VERSION/jmh-core-$JMH_VERSION.jar
+org/openjdk/jmh/jmh-generator-annprocess/$JMH_VERSION/jmh-generator-annprocess-$JMH_VERSION.jar
+net/sf/jopt-simple/jopt-simple/5.0.4/jopt-simple-5.0.4.jar
+org/apache/commons/commons-math3/3.6.1/commons-math3-3.6.1.jar"
+
+mkdir -p lib
+for jar in $JARS; do
+  if [ ! -f lib/$(basename $jar) ]; then
+    curl -sSfL -o lib/$(basename $jar) https://repo1.maven.org/maven2/$jar || exit 1
+  fi
+done
+
+HADOOP_CP=${HADOOP_CP:-$(hadoop classpath)}
+CP=$(echo lib/*.jar | tr ' ' ':'):$HADOOP_CP
+
+# JMH rejects benchmarks in the default package, where all the sources live,
+# so compile copies of the sources and benchmarks in one package. The JMH
+# annotation processor generates the benchmark harness while compiling
+rm -rf classes
+mkdir -p classes/src
+for source in ../*.java *.java; do
+  (echo "package trianglebench;"; cat $source) > classes/src/$(basename $source)
+done
+javac -cp $CP -d classes classes/src/*.java || exit 1
+
+java -cp classes:$CP org.openjdk.jmh.Main -prof gc "$@"
@@ -0,0 +1,18 @@
+#!/bin/bash
+
+# End-to-end comparison of TriangleCount, GraphPartition and
+# TriangleTypePartition under Hadoop's LocalJobRunner on a seeded synthetic
+# graph, checked against an in-memory reference count, for example
+#   ./end-to-end.sh rmat 65536 1000000 8,16,32
+#   ./end-to-end.sh clustered 100000 500000 16 7
+# Set HADOOP_CP to use a Hadoop classpath other than $(hadoop classpath)
+
+cd "$(dirname "$0")"
+
+HADOOP_CP=${HADOOP_CP:-$(hadoop classpath)}
+
+rm -rf e2e-classes
+mkdir e2e-classes
+javac -cp $HADOOP_CP -d e2e-classes ../*.java SyntheticGraphs.java EndToEndBenchmark.java || exit 1
+
+java -cp e2e-classes:$HADOOP_CP EndToEndBenchmark "$@"
@@ -0,0 +1,14 @@
+#!/bin/bash
+
+# Checks Subproblems against the nested scan over all pairs and triples of
+# partitions it replaced, for p = 2..64 or up to the given partition count,
+# for example
+#   ./subproblems-check.sh 128
+
+cd "$(dirname "$0")"
+
+rm -rf check-classes
+mkdir check-classes
+javac -d check-classes ../Subproblems.java SubproblemsCheck.java || exit 1
+
+java -cp check-classes SubproblemsCheck "$@"
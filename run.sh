@@ -2,17 +2,98 @@
 
 hdfs dfs -rm -r -f /user/rayandrew/temp
 
-# rm Triangle*.class
-# hadoop com.sun.tools.javac.Main TriangleCount.java
-# jar cf triangle.jar Triangle*.class
+TC_SOURCES="TriangleCount.java ExecutedJob.java SlowestCalls.java LongPair.java LongTriple.java EdgeParser.java"
+GP_SOURCES="GraphPartition.java ExecutedJob.java SlowestCalls.java Graph.java Intersection.java LongPair.java EdgeParser.java Subproblems.java SubproblemKey.java SubproblemEdgeKey.java SubproblemEmitter.java VertexPartitioner.java SkewReport.java EdgeSampler.java"
+LOCAL_SOURCES="LocalTriangleTypePartition.java EdgeParser.java CompactForward.java Intersection.java Subproblems.java BinaryEdgeList.java Varints.java VertexPartitioner.java EdgeSampler.java"
+TTP_SOURCES="TriangleTypePartition.java ExecutedJob.java SlowestCalls.java LongPair.java EdgeParser.java CompactForward.java Intersection.java Subproblems.java SubproblemKey.java SubproblemEdgeKey.java SubproblemEmitter.java SpilledSubproblem.java VertexPartitioner.java SkewReport.java PartitionCountEstimator.java EdgeSampler.java VertexTriangleList.java VertexTriangleListOutputFormat.java LongTriple.java TriangleList.java TriangleListOutputFormat.java Varints.java BinaryEdgeList.java BinaryEdgeListInputFormat.java BinaryEdgeListOutputFormat.java EdgeListConverter.java"
 
-# rm Graph*.class LongPair*.class
-# hadoop com.sun.tools.javac.Main GraphPartition.java Graph.java LongPair.java
-# jar cf graph.jar Graph*.class LongPair*.class
+# rm -f *.class
+# hadoop com.sun.tools.javac.Main $TC_SOURCES
+# jar cf triangle.jar *.class
 
-rm TriangleTypePartition*.class LongPair*.class
-hadoop com.sun.tools.javac.Main TriangleTypePartition.java LongPair.java
-jar cf ttp.jar TriangleTypePartition*.class LongPair*.class
+# rm -f *.class
+# hadoop com.sun.tools.javac.Main $GP_SOURCES
+# jar cf graph.jar *.class
+
+rm -f *.class
+hadoop com.sun.tools.javac.Main $TTP_SOURCES
+jar cf ttp.jar *.class
+
+# Add -D binaryIntermediate=true (and optionally -D compressIntermediate=true)
+# after the class name to pass intermediate results between the jobs as
+# SequenceFiles instead of text. Add -D counterAggregation=true to sum the
+# counts in the driver from job two's counters and skip job three
+# -D intersection=merge|galloping|block|adaptive picks the neighbor list
+# intersection kernel of job two (adaptive picks one per pair of lists)
+# Subproblems with an edge density of at least -D bitmapDensityThreshold
+# (default 0.01) are counted with neighbor bitsets of at most -D bitmapMemoryCap
+# bytes (default 64 MB)
+# -D fusedDeduplication=true skips job one: job two reads the raw input and
+# drops duplicate edges per subproblem, saving a pass over the edge set
+# -D secondarySort=true has the shuffle sort each subproblem's edges, so job
+# two's reducers build their graphs in one pass without sorting
+# Subproblems of more than -D maxSubproblemEdges edges (default: what fits in
+# half the reducer heap) are spilled to local disk and counted piecewise
+
+# Convert a text edge list once to the packed binary format (deduplicated, add
+# -D binaryEdgeListEncoding=delta for a smaller file). TriangleTypePartition and
+# LocalTriangleTypePartition detect binary input and skip parsing and job one
+# hadoop jar ttp.jar EdgeListConverter /data/twitter /user/rayandrew/twitter_binary
+
+# TriangleCount accepts -D hubDegreeThreshold=<degree> (and -D hubBlockCount=<n>)
+# to spread the wedges of high degree vertices over several reducers
+
+# Graphs that fit in memory can be counted on this machine instead, with the
+# same partition count argument
+# javac $LOCAL_SOURCES -cp $(hadoop classpath)
+# java -cp .:$(hadoop classpath) LocalTriangleTypePartition /data/testcase1 testcase1_output 3
+
+# All three drivers accept -D tempPath=<dir> for their intermediate results
+# (default /user/rayandrew/temp)
+
+# Every job prints a summary of its counters, including the work done by the
+# reducers (edges, wedges checked, intersections, build/sort/intersect time).
+# Each reduce task logs its -D slowestCallCount=<n> (default 10) slowest
+# subproblems or vertices, and every one of them at DEBUG level
+
+# GraphPartition and TriangleTypePartition print how many edges each subproblem
+# received (min, mean, max, max / mean and the largest subproblems). When ids
+# are structured and a few subproblems dominate, -D partitionHash=hash (and
+# -D partitionSeed=<n>) assigns vertices to partitions by a seeded hash instead
+# of vertex % p; LocalTriangleTypePartition takes the same -D as java options
+
+# TriangleTypePartition takes "auto" as partition count: a sample of
+# -D partitionSampleBytes=<n> (default 16 MB) of the input estimates its edge
+# count and max degree, and the smallest p whose largest subproblem fits
+# -D subproblemMemoryBytes=<n> (default half of mapreduce.reduce.memory.mb) is
+# used, keeping the shuffle (about p - 1 copies of every edge) small
+# hadoop jar ttp.jar TriangleTypePartition /data/twitter /user/rayandrew/twitter_output auto
+
+# -D edgeSampleProbability=<q> (and -D edgeSampleSeed=<n>) makes
+# TriangleTypePartition approximate: it counts the triangles of a sample that
+# keeps every edge with probability q, scales them by 1 / q^3 and prints a 95%
+# confidence interval. Subproblems shrink about q^2 times, and the result file
+# holds the estimate in the usual format; LocalTriangleTypePartition takes the
+# same -D as java options
+# hadoop jar ttp.jar TriangleTypePartition -D edgeSampleProbability=0.1 -D fusedDeduplication=true /data/twitter /user/rayandrew/twitter_estimate 16
+
+# -D vertexTrianglesPath=<dir> makes TriangleTypePartition also write the
+# degree, triangle count and local clustering coefficient of every vertex, as
+# VertexTriangleList files (see VertexTriangleList.Reader), from the same
+# subproblems, in one extra job
+# hadoop jar ttp.jar TriangleTypePartition -D vertexTrianglesPath=/user/rayandrew/twitter_vertices /data/twitter /user/rayandrew/twitter_output 64
+
+# -D trianglesPath=<dir> makes TriangleTypePartition also write every triangle
+# once, as TriangleList files (see TriangleList.Reader), straight from job two.
+# -D triangleVertices=<id,id,...> keeps only the triangles around these vertices
+# hadoop jar ttp.jar TriangleTypePartition -D trianglesPath=/user/rayandrew/twitter_triangles -D triangleVertices=12,813286 /data/twitter /user/rayandrew/twitter_output 64
+
+# Microbenchmarks of the counting kernels and Writables live in bench/, run
+# bench/bench.sh (JMH arguments such as a benchmark name filter are passed on)
+# and bench/end-to-end.sh compares the three algorithms on a synthetic graph
+# under the local job runner, e.g. bench/end-to-end.sh rmat 65536 1000000 8,16
+# bench/subproblems-check.sh checks Subproblems against the nested pair and
+# triple scan it replaced, for p = 2..64
 
 # Uncomment to use links-anon file
 # hadoop jar ttp.jar TriangleTypePartition /user/rayandrew/links_anon_input /user/rayandrew/links_anon_output 64